@@ -0,0 +1,73 @@
+package it.auties.main;
+
+import com.sun.source.tree.CompilationUnitTree;
+import com.sun.source.util.JavacTask;
+import com.sun.source.util.TaskEvent;
+import it.auties.optional.plugin.OptionalPlugin;
+import org.openjdk.jmh.annotations.*;
+
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.ToolProvider;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@Fork(value = 1, jvmArgsAppend = {
+        "--add-opens", "jdk.compiler/com.sun.tools.javac.api=ALL-UNNAMED",
+        "--add-opens", "jdk.compiler/com.sun.tools.javac.code=ALL-UNNAMED",
+        "--add-opens", "jdk.compiler/com.sun.tools.javac.comp=ALL-UNNAMED",
+        "--add-opens", "jdk.compiler/com.sun.tools.javac.main=ALL-UNNAMED",
+        "--add-opens", "jdk.compiler/com.sun.tools.javac.tree=ALL-UNNAMED",
+        "--add-opens", "jdk.compiler/com.sun.tools.javac.util=ALL-UNNAMED"
+})
+@Warmup(iterations = 10)
+@Measurement(iterations = 5)
+public class CompilerBenchmark {
+    // Each generated method contains two optional call sites
+    private static final int METHODS = 500;
+    private static final int CALL_SITES = METHODS * 2;
+
+    private final JavaFileObject source = createSource();
+    private List<CompilationUnitTree> units;
+    private OptionalPlugin plugin;
+
+    // Measures only the plugin: the source is parsed and attributed before every invocation
+    // and the analysis event that javac would fire is then replayed on a fresh plugin instance
+    @Setup(Level.Invocation)
+    public void analyze() throws Exception {
+        var compiler = ToolProvider.getSystemJavaCompiler();
+        var task = (JavacTask) compiler.getTask(null, null, null, List.of("-proc:none"), null, List.of(source));
+        this.units = new ArrayList<>();
+        task.parse().forEach(units::add);
+        task.analyze();
+        this.plugin = new OptionalPlugin();
+        plugin.init(task);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @OperationsPerInvocation(CALL_SITES)
+    public List<CompilationUnitTree> translateCallSite() {
+        units.forEach(unit -> plugin.finished(new TaskEvent(TaskEvent.Kind.ANALYZE, unit)));
+        return units;
+    }
+
+    private static JavaFileObject createSource() {
+        var builder = new StringBuilder("import java.util.Optional;\npublic class Sites {\n");
+        for (int i = 0; i < METHODS; i++) {
+            builder.append("    static long sum%s(Long value){ return Optional.ofNullable(value).map(x -> x + %s).orElse(0L); }\n".formatted(i, i));
+        }
+
+        builder.append("}\n");
+        return new SimpleJavaFileObject(URI.create("string:///Sites.java"), JavaFileObject.Kind.SOURCE) {
+            @Override
+            public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                return builder;
+            }
+        };
+    }
+}
@@ -0,0 +1,76 @@
+package it.auties.main;
+
+import java.lang.management.ManagementFactory;
+import java.lang.ref.Reference;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.OptionalDouble;
+import java.util.OptionalInt;
+import java.util.OptionalLong;
+import java.util.function.IntFunction;
+
+// JMH can't measure footprint, so this measures the heap retained by a million instances after a full GC
+// Compile it with and without the plugin, then run it with -XX:+UseSerialGC for stable numbers
+public class FootprintBenchmark {
+    private static final int INSTANCES = 1_000_000;
+    private static final String SOURCE = "gateway";
+    private static final Instant SEEN_AT = Instant.ofEpochSecond(1_700_000_000L);
+
+    public record Event(long id, Optional<String> source, Optional<Instant> seenAt, OptionalInt retries) {
+
+    }
+
+    public record Quote(long id, OptionalLong bid, OptionalLong ask, OptionalDouble last, OptionalInt size) {
+
+    }
+
+    public static class Session {
+        private final long id;
+        private Optional<String> user;
+        private Optional<Instant> expiresAt;
+
+        public Session(long id, Optional<String> user, Optional<Instant> expiresAt) {
+            this.id = id;
+            this.user = user;
+            this.expiresAt = expiresAt;
+        }
+
+        public Optional<String> user() {
+            return user;
+        }
+
+        public Optional<Instant> expiresAt() {
+            return expiresAt;
+        }
+    }
+
+    public static void main(String[] args) {
+        measure("record, present", index -> new Event(index, Optional.of(SOURCE), Optional.of(SEEN_AT), OptionalInt.of(index & 7)));
+        measure("record, empty", index -> new Event(index, Optional.empty(), Optional.empty(), OptionalInt.empty()));
+        measure("quote, present", index -> new Quote(index, OptionalLong.of(index), OptionalLong.of(index + 1L), OptionalDouble.of(index + 0.5), OptionalInt.of(index & 7)));
+        measure("quote, empty", index -> new Quote(index, OptionalLong.empty(), OptionalLong.empty(), OptionalDouble.empty(), OptionalInt.empty()));
+        measure("class, present", index -> new Session(index, Optional.of(SOURCE), Optional.of(SEEN_AT)));
+        measure("class, empty", index -> new Session(index, Optional.empty(), Optional.empty()));
+    }
+
+    private static void measure(String name, IntFunction<Object> factory) {
+        var instances = new Object[INSTANCES];
+        var before = usedHeap();
+        for (var index = 0; index < INSTANCES; index++) {
+            instances[index] = factory.apply(index);
+        }
+
+        var after = usedHeap();
+        Reference.reachabilityFence(instances);
+        System.out.printf("%-16s %6.1f bytes/instance%n", name, (after - before) / (double) INSTANCES);
+    }
+
+    private static long usedHeap() {
+        var memory = ManagementFactory.getMemoryMXBean();
+        for (var run = 0; run < 4; run++) {
+            System.gc();
+        }
+
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+}
@@ -0,0 +1,20 @@
+package it.auties.optional.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+@Retention(RetentionPolicy.CLASS)
+@Target({ElementType.METHOD, ElementType.FIELD})
+public @interface Desugared {
+    String value() default "";
+
+    String[] parameters() default {};
+
+    int intSentinel() default Integer.MIN_VALUE;
+
+    long longSentinel() default Long.MIN_VALUE;
+
+    double doubleSentinel() default Double.NaN;
+}
@@ -0,0 +1,29 @@
+package it.auties.optional.event;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import lombok.Setter;
+import lombok.experimental.Accessors;
+
+@Name("it.auties.optional.Transformation")
+@Label("Optional Transformation")
+@Category({"Java Compiler", "Optional"})
+@Description("Rewrite of a single optional call site")
+@Setter
+@Accessors(fluent = true, chain = true)
+public class TransformationEvent extends Event {
+    @Label("Transformer")
+    private String transformer;
+
+    @Label("Instruction")
+    private String instruction;
+
+    @Label("Enclosing Class")
+    private String enclosingClass;
+
+    @Label("Generated Methods")
+    private int generatedMethods;
+}
@@ -0,0 +1,26 @@
+package it.auties.optional.event;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import lombok.Setter;
+import lombok.experimental.Accessors;
+
+@Name("it.auties.optional.UnitTranslation")
+@Label("Optional Unit Translation")
+@Category({"Java Compiler", "Optional"})
+@Description("Desugaring of the optionals in a compilation unit")
+@Setter
+@Accessors(fluent = true, chain = true)
+public class UnitTranslationEvent extends Event {
+    @Label("Source File")
+    private String sourceFile;
+
+    @Label("Skipped")
+    private boolean skipped;
+
+    @Label("Generated Methods")
+    private int generatedMethods;
+}
@@ -0,0 +1,184 @@
+package it.auties.optional.plugin;
+
+import com.sun.tools.javac.code.Flags;
+import com.sun.tools.javac.code.Symbol;
+import com.sun.tools.javac.code.Type;
+import com.sun.tools.javac.tree.JCTree;
+import com.sun.tools.javac.tree.TreeInfo;
+import com.sun.tools.javac.tree.TreeScanner;
+import it.auties.optional.annotation.NoOptionalAllocation;
+import it.auties.optional.tree.Elements;
+import it.auties.optional.tree.Maker;
+import it.auties.optional.util.OptionalManager;
+
+import java.util.stream.Stream;
+
+public class AllocationChecker extends TreeScanner {
+    private final Maker maker;
+    private final OptionalManager manager;
+    private Symbol.MethodSymbol enclosingMethod;
+    private String checkedMember;
+
+    public AllocationChecker(Maker maker, OptionalManager manager) {
+        this.maker = maker;
+        this.manager = manager;
+    }
+
+    public void check(JCTree.JCCompilationUnit unit) {
+        scan(unit);
+    }
+
+    @Override
+    public void visitClassDef(JCTree.JCClassDecl tree) {
+        var previousMember = checkedMember;
+        var previousMethod = enclosingMethod;
+        if(previousMember == null && Elements.isAnnotated(tree.sym, NoOptionalAllocation.class)){
+            this.checkedMember = tree.sym.getSimpleName().toString();
+        }
+
+        if(checkedMember != null){
+            super.visitClassDef(tree);
+        }else {
+            tree.defs.stream()
+                    .filter(member -> member instanceof JCTree.JCMethodDecl || member instanceof JCTree.JCClassDecl)
+                    .forEach(this::scanMember);
+        }
+
+        this.enclosingMethod = previousMethod;
+        this.checkedMember = previousMember;
+    }
+
+    private void scanMember(JCTree member) {
+        if(!(member instanceof JCTree.JCMethodDecl method)){
+            scan(member);
+            return;
+        }
+
+        var annotated = findAnnotatedMethod(method);
+        if(annotated == null){
+            return;
+        }
+
+        this.checkedMember = annotated.name == maker.names().init ? "constructor" : annotated.name.toString();
+        scan(method);
+        this.checkedMember = null;
+    }
+
+    private Symbol findAnnotatedMethod(JCTree.JCMethodDecl method) {
+        var source = manager.sourceOf(method.sym);
+        return Elements.isAnnotated(source, NoOptionalAllocation.class) ? source : null;
+    }
+
+    @Override
+    public void visitMethodDef(JCTree.JCMethodDecl tree) {
+        var previousMethod = enclosingMethod;
+        this.enclosingMethod = tree.sym;
+        super.visitMethodDef(tree);
+        this.enclosingMethod = previousMethod;
+    }
+
+    @Override
+    public void visitLambda(JCTree.JCLambda tree) {
+        var previousMethod = enclosingMethod;
+        this.enclosingMethod = null;
+        super.visitLambda(tree);
+        this.enclosingMethod = previousMethod;
+    }
+
+    @Override
+    public void visitApply(JCTree.JCMethodInvocation tree) {
+        super.visitApply(tree);
+        var selected = TreeInfo.symbolFor(tree);
+        if(selected == null){
+            return;
+        }
+
+        if(isOptional(tree.type)){
+            report(tree, "%s.%s returns a real %s".formatted(selected.owner.getSimpleName(), selected.name, tree.type.tsym.getSimpleName()));
+            return;
+        }
+
+        if(isStreamOfNullable(selected)){
+            report(tree, "Stream.ofNullable allocates a stream");
+            return;
+        }
+
+        if(!isGenerated(selected)){
+            return;
+        }
+
+        var parameterTypes = selected.type.getParameterTypes();
+        for(var argument : tree.args){
+            if(parameterTypes.isEmpty()){
+                break;
+            }
+
+            checkBoxing(argument, parameterTypes.head);
+            parameterTypes = parameterTypes.tail;
+        }
+    }
+
+    @Override
+    public void visitVarDef(JCTree.JCVariableDecl tree) {
+        super.visitVarDef(tree);
+        if(tree.init != null && isDesugared(tree.sym)){
+            checkBoxing(tree.init, tree.sym.type);
+        }
+    }
+
+    @Override
+    public void visitAssign(JCTree.JCAssign tree) {
+        super.visitAssign(tree);
+        var assigned = TreeInfo.symbol(tree.lhs);
+        if(assigned != null && isDesugared(assigned)){
+            checkBoxing(tree.rhs, assigned.type);
+        }
+    }
+
+    @Override
+    public void visitReturn(JCTree.JCReturn tree) {
+        super.visitReturn(tree);
+        if(tree.expr != null && enclosingMethod != null && isDesugared(enclosingMethod)){
+            checkBoxing(tree.expr, enclosingMethod.getReturnType());
+        }
+    }
+
+    private void checkBoxing(JCTree.JCExpression value, Type target) {
+        if(value.type == null || !value.type.isPrimitive() || target == null || target.isPrimitive()){
+            return;
+        }
+
+        report(value, "a desugared %s value is boxed into %s".formatted(value.type, target.tsym.getSimpleName()));
+    }
+
+    private void report(JCTree tree, String reason) {
+        if(checkedMember == null){
+            return;
+        }
+
+        maker.log().rawError(tree.pos, "error: %s in %s, which is annotated with @%s".formatted(reason, checkedMember, NoOptionalAllocation.class.getSimpleName()));
+    }
+
+    private boolean isDesugared(Symbol symbol) {
+        if(isGenerated(symbol)){
+            return true;
+        }
+
+        var originalType = manager.originalType(symbol);
+        return originalType != null && isOptional(Elements.getReturnType(originalType));
+    }
+
+    private boolean isGenerated(Symbol symbol) {
+        return (symbol.flags() & Flags.SYNTHETIC) != 0
+                && (symbol instanceof Symbol.VarSymbol || manager.isGenerated(symbol));
+    }
+
+    private boolean isStreamOfNullable(Symbol selected) {
+        return selected.name.contentEquals("ofNullable")
+                && selected.owner.getQualifiedName().contentEquals(Stream.class.getName());
+    }
+
+    private boolean isOptional(Type type) {
+        return type != null && type.tsym != null && maker.hasOptionalName(type.tsym.getQualifiedName());
+    }
+}
@@ -0,0 +1,182 @@
+package it.auties.optional.plugin;
+
+import com.sun.tools.javac.code.Kinds;
+import com.sun.tools.javac.code.Symbol;
+import com.sun.tools.javac.code.Type;
+import com.sun.tools.javac.code.Types;
+import com.sun.tools.javac.tree.JCTree;
+import com.sun.tools.javac.tree.TreeInfo;
+import com.sun.tools.javac.tree.TreeScanner;
+import com.sun.tools.javac.tree.TreeTranslator;
+import com.sun.tools.javac.util.List;
+import it.auties.optional.tree.DesugarMetadata;
+import it.auties.optional.tree.Maker;
+import it.auties.optional.tree.PresenceBits;
+import it.auties.optional.util.DesugarScope;
+import it.auties.optional.util.OptionalManager;
+import lombok.RequiredArgsConstructor;
+
+@RequiredArgsConstructor
+public class BoundaryTranslator extends TreeTranslator {
+    private final Maker maker;
+    private final Types types;
+    private final OptionalManager manager;
+    private final DesugarScope scope;
+    private final PresenceBits bits;
+    private final DesugarMetadata metadata;
+    private Symbol owner;
+
+    public <T extends JCTree> T translate(T tree, Symbol owner) {
+        this.owner = owner;
+        return translate(tree);
+    }
+
+    @Override
+    public void visitApply(JCTree.JCMethodInvocation tree) {
+        super.visitApply(tree);
+        var selected = TreeInfo.symbol(tree.meth);
+        if(!isDesugared(selected)){
+            return;
+        }
+
+        var originalType = manager.originalType(selected);
+        tree.args = unwrapArguments(tree.args, originalType.getParameterTypes());
+        if(isOptional(originalType.getReturnType())){
+            this.result = wrap(tree);
+        }
+    }
+
+    @Override
+    public void visitNewClass(JCTree.JCNewClass tree) {
+        super.visitNewClass(tree);
+        if(!isDesugared(tree.constructor)){
+            return;
+        }
+
+        tree.args = unwrapArguments(tree.args, manager.originalType(tree.constructor).getParameterTypes());
+    }
+
+    @Override
+    public void visitIdent(JCTree.JCIdent tree) {
+        super.visitIdent(tree);
+        metadata.checkSentinels(tree, tree.sym);
+        if(isDesugaredField(tree.sym)){
+            this.result = wrap(tree);
+        }
+    }
+
+    @Override
+    public void visitSelect(JCTree.JCFieldAccess tree) {
+        super.visitSelect(tree);
+        metadata.checkSentinels(tree, tree.sym);
+        if(isDesugaredField(tree.sym)){
+            this.result = wrap(tree);
+        }
+    }
+
+    @Override
+    public void visitReference(JCTree.JCMemberReference tree) {
+        super.visitReference(tree);
+        metadata.checkSentinels(tree, tree.sym);
+    }
+
+    @Override
+    public void visitExec(JCTree.JCExpressionStatement tree) {
+        if(TreeInfo.skipParens(tree.expr) instanceof JCTree.JCAssign assignment && bits.isPacked(TreeInfo.symbol(assignment.lhs)) && bits.isConditionalWrite(assignment)){
+            this.result = translate(bits.splitConditionalWrite(assignment));
+            return;
+        }
+
+        super.visitExec(tree);
+    }
+
+    @Override
+    public void visitAssign(JCTree.JCAssign tree) {
+        if(!isDesugaredField(TreeInfo.symbol(tree.lhs))){
+            super.visitAssign(tree);
+            return;
+        }
+
+        if(tree.lhs instanceof JCTree.JCFieldAccess access){
+            access.selected = translate(access.selected);
+        }
+
+        var fieldType = maker.unboxWrapper(manager.originalType(TreeInfo.symbol(tree.lhs)));
+        var present = bits.findPresence(tree.rhs);
+        tree.lhs.type = fieldType;
+        tree.type = fieldType;
+        tree.rhs = unwrap(translate(tree.rhs));
+        this.result = bits.isPacked(TreeInfo.symbol(tree.lhs)) ? bits.createWrite(tree.lhs, tree.rhs, present, owner) : tree;
+    }
+
+    @Override
+    public void visitLambda(JCTree.JCLambda tree) {
+        super.visitLambda(tree);
+        if(tree.target == null){
+            return;
+        }
+
+        var descriptor = types.findDescriptorSymbol(tree.target.tsym);
+        if(!isDesugared(descriptor) || !isOptional(manager.originalType(descriptor).getReturnType())){
+            return;
+        }
+
+        if(tree.getBodyKind() == JCTree.JCLambda.BodyKind.EXPRESSION){
+            tree.body = unwrap((JCTree.JCExpression) tree.body);
+            return;
+        }
+
+        new TreeScanner(){
+            @Override
+            public void visitReturn(JCTree.JCReturn tree) {
+                tree.expr = unwrap(tree.expr);
+            }
+
+            @Override
+            public void visitLambda(JCTree.JCLambda tree) {
+
+            }
+
+            @Override
+            public void visitClassDef(JCTree.JCClassDecl tree) {
+
+            }
+        }.scan(tree.body);
+    }
+
+    private List<JCTree.JCExpression> unwrapArguments(List<JCTree.JCExpression> arguments, List<Type> parameterTypes) {
+        var result = List.<JCTree.JCExpression>nil();
+        for(var argument : arguments){
+            var parameterType = parameterTypes.isEmpty() ? null : parameterTypes.head;
+            result = result.append(isOptional(parameterType) ? unwrap(argument) : argument);
+            parameterTypes = parameterTypes.isEmpty() ? parameterTypes : parameterTypes.tail;
+        }
+
+        return result;
+    }
+
+    private JCTree.JCExpression wrap(JCTree.JCExpression expression) {
+        var optionalType = expression.type;
+        expression.type = maker.unboxWrapper(optionalType);
+        return maker.createWrap(expression, optionalType, owner);
+    }
+
+    private JCTree.JCExpression unwrap(JCTree.JCExpression expression) {
+        return isOptional(expression.type) ? maker.createUnwrap(expression, expression.type) : expression;
+    }
+
+    private boolean isDesugaredField(Symbol symbol) {
+        return symbol instanceof Symbol.VarSymbol
+                && symbol.owner.kind == Kinds.Kind.TYP
+                && isDesugared(symbol)
+                && isOptional(manager.originalType(symbol));
+    }
+
+    private boolean isDesugared(Symbol symbol) {
+        return symbol != null && !isOptional(symbol.owner.type) && (scope.desugars(symbol) || manager.isImported(symbol));
+    }
+
+    private boolean isOptional(Type type) {
+        return type != null && type.tsym != null && maker.hasOptionalName(type.tsym.getQualifiedName());
+    }
+}
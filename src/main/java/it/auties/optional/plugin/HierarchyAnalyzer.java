@@ -0,0 +1,196 @@
+package it.auties.optional.plugin;
+
+import com.sun.tools.javac.code.Flags;
+import com.sun.tools.javac.code.Symbol;
+import com.sun.tools.javac.code.Type;
+import com.sun.tools.javac.code.Types;
+import com.sun.tools.javac.tree.JCTree;
+import com.sun.tools.javac.tree.TreeInfo;
+import com.sun.tools.javac.tree.TreeScanner;
+import it.auties.optional.tree.Maker;
+import it.auties.optional.util.DesugarScope;
+import it.auties.optional.util.OptionalManager;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public class HierarchyAnalyzer extends TreeScanner {
+    private final Maker maker;
+    private final Types types;
+    private final OptionalManager manager;
+    private final DesugarScope scope;
+    private final Set<JCTree.JCCompilationUnit> units;
+    private final Map<Symbol, JCTree> declarations;
+    private final Map<Symbol, Symbol> groups;
+    private boolean analyzed;
+
+    public HierarchyAnalyzer(Maker maker, Types types, OptionalManager manager, DesugarScope scope) {
+        this.maker = maker;
+        this.types = types;
+        this.manager = manager;
+        this.scope = scope;
+        this.units = new LinkedHashSet<>();
+        this.declarations = new HashMap<>();
+        this.groups = new LinkedHashMap<>();
+    }
+
+    public void enterUnit(JCTree.JCCompilationUnit unit) {
+        if(!analyzed){
+            units.add(unit);
+        }
+    }
+
+    public void analyze() {
+        if(analyzed){
+            return;
+        }
+
+        this.analyzed = true;
+        units.forEach(this::scan);
+        findGroups().forEach(this::resolve);
+        units.clear();
+        declarations.clear();
+        groups.clear();
+    }
+
+    @Override
+    public void visitMethodDef(JCTree.JCMethodDecl tree) {
+        if(tree.sym != null){
+            declarations.put(tree.sym, tree);
+        }
+
+        super.visitMethodDef(tree);
+    }
+
+    @Override
+    public void visitClassDef(JCTree.JCClassDecl tree) {
+        super.visitClassDef(tree);
+        if(tree.sym == null){
+            return;
+        }
+
+        if(tree.sym.isRecord()){
+            TreeInfo.recordFields(tree)
+                    .forEach(field -> declarations.putIfAbsent(tree.sym.getRecordComponent(field.sym).accessor, field));
+        }
+
+        for(var supertype : types.closure(tree.sym.type)){
+            for(var member : supertype.tsym.members().getSymbols(this::isOverridable)){
+                if(!manager.isImported(member) && !hasOptionalSignature(types.memberType(tree.sym.type, member))){
+                    continue;
+                }
+
+                var implementation = ((Symbol.MethodSymbol) member).implementation(tree.sym, types, false);
+                if(implementation != null && implementation != member){
+                    join(member, implementation);
+                }
+            }
+        }
+    }
+
+    private boolean isOverridable(Symbol symbol) {
+        return symbol instanceof Symbol.MethodSymbol method
+                && !method.isConstructor()
+                && (method.flags() & (Flags.STATIC | Flags.PRIVATE | Flags.SYNTHETIC)) == 0;
+    }
+
+    private boolean hasOptionalSignature(Type type) {
+        return isOptional(type.getReturnType())
+                || type.getParameterTypes().stream().anyMatch(this::isOptional);
+    }
+
+    private boolean isOptional(Type type) {
+        return type != null && type.tsym != null && maker.hasOptionalName(type.tsym.getQualifiedName());
+    }
+
+    private void join(Symbol first, Symbol second) {
+        var firstRoot = findRoot(first);
+        var secondRoot = findRoot(second);
+        if(firstRoot != secondRoot){
+            groups.put(secondRoot, firstRoot);
+        }
+    }
+
+    private Symbol findRoot(Symbol symbol) {
+        var parent = groups.putIfAbsent(symbol, symbol);
+        if(parent == null || parent == symbol){
+            return symbol;
+        }
+
+        var root = findRoot(parent);
+        groups.put(symbol, root);
+        return root;
+    }
+
+    private Map<Symbol, List<Symbol>> findGroups() {
+        var result = new LinkedHashMap<Symbol, List<Symbol>>();
+        groups.keySet()
+                .forEach(member -> result.computeIfAbsent(findRoot(member), key -> new ArrayList<>()).add(member));
+        return result;
+    }
+
+    private void resolve(Symbol root, List<Symbol> members) {
+        var desugared = members.stream()
+                .filter(manager::isImported)
+                .findFirst();
+        var kept = members.stream()
+                .filter(this::keepsSignature)
+                .findFirst();
+        if(desugared.isPresent() && kept.isPresent()){
+            members.stream()
+                    .filter(declarations::containsKey)
+                    .forEach(member -> reportConflict(member, desugared.get(), kept.get()));
+            return;
+        }
+
+        var keep = desugared.isEmpty() && (kept.isPresent() || members.stream().anyMatch(scope::exports));
+        members.stream()
+                .filter(declarations::containsKey)
+                .forEach(member -> scope.hierarchy().put(member, keep));
+        kept.ifPresent(reason -> members.stream()
+                .filter(member -> member != reason && declarations.containsKey(member) && scope.translates(member))
+                .filter(member -> hasOptionalSignature(member.type))
+                .forEach(member -> reportKept(member, reason)));
+    }
+
+    private boolean keepsSignature(Symbol member) {
+        return declarations.containsKey(member) ? !scope.translates(member) : !manager.isImported(member);
+    }
+
+    private void reportConflict(Symbol member, Symbol desugared, Symbol kept) {
+        report(member, "error: %s can't be desugared consistently with the methods it overrides: %s was desugared outside this compilation, while %s %s"
+                .formatted(describe(member), describe(desugared), member == kept ? "it" : describe(kept), describeReason(kept)), true);
+    }
+
+    private void reportKept(Symbol member, Symbol reason) {
+        report(member, "warning: %s keeps its optional signature to stay compatible with %s, which %s"
+                .formatted(describe(member), describe(reason), describeReason(reason)), false);
+    }
+
+    private String describeReason(Symbol member) {
+        return declarations.containsKey(member) ? "is excluded from the desugaring" : "is compiled outside this compilation";
+    }
+
+    private String describe(Symbol member) {
+        var owner = member.owner.name.isEmpty() ? member.owner.flatName() : member.owner.getSimpleName();
+        return "%s.%s".formatted(owner, member.name);
+    }
+
+    private void report(Symbol member, String message, boolean error) {
+        var log = maker.log();
+        var previousSource = log.useSource(member.outermostClass().sourcefile);
+        var position = declarations.get(member).pos;
+        if(error){
+            log.rawError(position, message);
+        }else {
+            log.rawWarning(position, message);
+        }
+
+        log.useSource(previousSource);
+    }
+}
@@ -0,0 +1,164 @@
+package it.auties.optional.plugin;
+
+import com.sun.tools.javac.code.Kinds;
+import com.sun.tools.javac.code.Symbol;
+import com.sun.tools.javac.tree.JCTree;
+import com.sun.tools.javac.tree.TreeScanner;
+import com.sun.tools.javac.util.List;
+import it.auties.optional.transformer.OptionalTransformer;
+import it.auties.optional.tree.Maker;
+import it.auties.optional.tree.OptionalScanner;
+import it.auties.optional.util.DesugarScope;
+import it.auties.optional.util.ImpactReport;
+import it.auties.optional.util.OptionalManager;
+import lombok.Getter;
+import lombok.experimental.Accessors;
+
+import java.util.Set;
+
+import static com.sun.tools.javac.tree.TreeInfo.symbolFor;
+
+public class ImpactAnalyzer extends TreeScanner {
+    private static final Set<String> ALLOCATING_INSTRUCTIONS = Set.of("of", "ofNullable", "map");
+    private static final Set<String> BOXING_INSTRUCTIONS = Set.of("of", "ofNullable");
+    private final Maker maker;
+    private final OptionalManager manager;
+    private final OptionalScanner scanner;
+    private final DesugarScope scope;
+    private final boolean fuseChains;
+    @Getter
+    @Accessors(fluent = true)
+    private final ImpactReport report;
+    private JCTree.JCCompilationUnit unit;
+    private Symbol.ClassSymbol enclosingClass;
+    private Symbol enclosingMember;
+
+    public ImpactAnalyzer(Maker maker, OptionalManager manager, DesugarScope scope, boolean fuseChains) {
+        this.maker = maker;
+        this.manager = manager;
+        this.scope = scope;
+        this.fuseChains = fuseChains;
+        this.scanner = new OptionalScanner(maker);
+        this.report = new ImpactReport();
+    }
+
+    public void analyzeUnit(JCTree.JCCompilationUnit unit) {
+        if(!scanner.containsOptional(unit)){
+            return;
+        }
+
+        this.unit = unit;
+        scan(unit);
+        this.unit = null;
+    }
+
+    @Override
+    public void visitClassDef(JCTree.JCClassDecl tree) {
+        var previousClass = enclosingClass;
+        var previousMember = enclosingMember;
+        this.enclosingClass = tree.sym;
+        this.enclosingMember = null;
+        super.visitClassDef(tree);
+        this.enclosingMember = previousMember;
+        this.enclosingClass = previousClass;
+    }
+
+    @Override
+    public void visitMethodDef(JCTree.JCMethodDecl tree) {
+        var previousMember = enclosingMember;
+        this.enclosingMember = tree.sym;
+        super.visitMethodDef(tree);
+        this.enclosingMember = previousMember;
+    }
+
+    @Override
+    public void visitVarDef(JCTree.JCVariableDecl tree) {
+        if(tree.sym == null || tree.sym.owner.kind != Kinds.Kind.TYP){
+            super.visitVarDef(tree);
+            return;
+        }
+
+        var previousMember = enclosingMember;
+        this.enclosingMember = tree.sym;
+        super.visitVarDef(tree);
+        this.enclosingMember = previousMember;
+    }
+
+    @Override
+    public void visitApply(JCTree.JCMethodInvocation tree) {
+        super.visitApply(tree);
+        var selected = symbolFor(tree);
+        if(isOwnedByOptional(selected)){
+            record(tree, selected, tree.args, false);
+        }
+    }
+
+    @Override
+    public void visitReference(JCTree.JCMemberReference tree) {
+        super.visitReference(tree);
+        if(isOwnedByOptional(tree.sym)){
+            record(tree, tree.sym, List.nil(), true);
+        }
+    }
+
+    private void record(JCTree tree, Symbol selected, List<JCTree.JCExpression> arguments, boolean reference) {
+        var instruction = selected.getSimpleName().toString();
+        var transformer = manager.transformers()
+                .find(selected, arguments.map(argument -> argument.type))
+                .filter(ignored -> !isBoundReference(tree))
+                .map(OptionalTransformer::getClass)
+                .map(Class::getSimpleName)
+                .orElse(null);
+        var status = findStatus(transformer);
+        var desugared = status == ImpactReport.Status.DESUGARED;
+        var site = new ImpactReport.CallSite(
+                unit.getSourceFile().getName(),
+                unit.getLineMap().getLineNumber(tree.pos),
+                unit.getLineMap().getColumnNumber(tree.pos),
+                enclosingClass == null ? null : enclosingClass.flatname.toString(),
+                enclosingMember == null ? null : enclosingMember.name.toString(),
+                selected.owner.getSimpleName().toString(),
+                instruction,
+                reference,
+                transformer,
+                status,
+                desugared && ALLOCATING_INSTRUCTIONS.contains(instruction) ? 1 : 0,
+                desugared && isScalarCandidate(selected, arguments) ? 1 : 0
+        );
+        report.add(findModuleName(), site);
+    }
+
+    private boolean isBoundReference(JCTree tree) {
+        return tree instanceof JCTree.JCMemberReference reference
+                && reference.kind == JCTree.JCMemberReference.ReferenceKind.BOUND;
+    }
+
+    private ImpactReport.Status findStatus(String transformer) {
+        var member = enclosingMember != null ? enclosingMember : enclosingClass;
+        if(member != null && !scope.includes(member)){
+            return ImpactReport.Status.EXCLUDED;
+        }
+
+        return transformer == null ? ImpactReport.Status.UNSUPPORTED : ImpactReport.Status.DESUGARED;
+    }
+
+    private boolean isScalarCandidate(Symbol selected, List<JCTree.JCExpression> arguments) {
+        return fuseChains
+                && selected.owner.getQualifiedName() == maker.symbols().optionalName()
+                && BOXING_INSTRUCTIONS.contains(selected.getSimpleName().toString())
+                && arguments.size() == 1
+                && arguments.head.type != null
+                && arguments.head.type.isPrimitive();
+    }
+
+    private String findModuleName() {
+        var module = unit.modle;
+        return module == null || module.isUnnamed() ? "unnamed" : module.getQualifiedName().toString();
+    }
+
+    private boolean isOwnedByOptional(Symbol selected) {
+        return selected != null
+                && selected.getEnclosingElement() instanceof Symbol.ClassSymbol classSymbol
+                && maker.hasOptionalName(classSymbol.getQualifiedName());
+    }
+}
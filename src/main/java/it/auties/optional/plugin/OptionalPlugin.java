@@ -5,26 +5,59 @@ import com.sun.source.util.Plugin;
 import com.sun.source.util.TaskEvent;
 import com.sun.source.util.TaskListener;
 import com.sun.tools.javac.api.BasicJavacTask;
+import com.sun.tools.javac.code.Symbol;
 import com.sun.tools.javac.code.Symtab;
 import com.sun.tools.javac.code.Types;
+import com.sun.tools.javac.comp.Annotate;
 import com.sun.tools.javac.comp.Attr;
 import com.sun.tools.javac.comp.Operators;
+import com.sun.tools.javac.comp.Todo;
+import com.sun.tools.javac.main.JavaCompiler;
+import com.sun.tools.javac.processing.JavacProcessingEnvironment;
 import com.sun.tools.javac.tree.JCTree;
 import com.sun.tools.javac.tree.TreeMaker;
+import com.sun.tools.javac.util.Context;
+import com.sun.tools.javac.util.Log;
 import com.sun.tools.javac.util.Names;
 import it.auties.optional.transformer.*;
+import it.auties.optional.tree.DesugarMetadata;
 import it.auties.optional.tree.Maker;
+import it.auties.optional.tree.PresenceBits;
+import it.auties.optional.tree.SymbolCache;
+import it.auties.optional.util.CallSiteProfile;
+import it.auties.optional.util.CompileCommands;
 import it.auties.optional.util.DebugTools;
+import it.auties.optional.util.DesugarScope;
 import it.auties.optional.util.IllegalReflection;
+import it.auties.optional.util.ImpactReport;
+import it.auties.optional.util.InlineBudget;
 import it.auties.optional.util.OptionalManager;
+import it.auties.optional.util.PluginOptions;
+import it.auties.optional.util.Sentinels;
+import it.auties.optional.util.SourceMapping;
+import it.auties.optional.util.TranslationStats;
+import lombok.SneakyThrows;
+import lombok.experimental.ExtensionMethod;
 
 import javax.annotation.processing.SupportedSourceVersion;
 import javax.lang.model.SourceVersion;
+import javax.tools.JavaFileManager;
+import java.nio.file.Path;
 
 @SupportedSourceVersion(SourceVersion.RELEASE_17)
+@ExtensionMethod(IllegalReflection.class)
 public class OptionalPlugin implements Plugin, TaskListener {
+    private Context context;
     private OptionalTranslator translator;
     private DebugTools debugTools;
+    private Path statsFile;
+    private Path mappingFile;
+    private boolean compileCommands;
+    private Path compileCommandsFile;
+    private ImpactAnalyzer analyzer;
+    private Path analysisFile;
+    private DesugarMetadata metadata;
+    private HierarchyAnalyzer hierarchy;
 
     @Override
     public String getName() {
@@ -34,22 +67,64 @@ public class OptionalPlugin implements Plugin, TaskListener {
     @Override
     public void init(JavacTask task, String... args) {
         IllegalReflection.openJavac();
-        var context = ((BasicJavacTask) task).getContext();
+        this.context = ((BasicJavacTask) task).getContext();
         var names = Names.instance(context);
         var types = Types.instance(context);
         var symtab = Symtab.instance(context);
         var operators = Operators.instance(context);
         var maker = TreeMaker.instance(context);
         var attr = Attr.instance(context);
-        var simpleMaker = new Maker(maker, names, symtab, attr, types, operators);
-        var manager = initializeManager(simpleMaker);
-        this.translator = new OptionalTranslator(simpleMaker, types, manager);
+        var manager = OptionalManager.instance(context);
         this.debugTools = new DebugTools(args);
+        var simpleMaker = new Maker(maker, names, symtab, attr, types, operators, Log.instance(context), new Sentinels(args), debugTools.instrument(), manager, SymbolCache.instance(context));
+        initializeManager(manager, simpleMaker);
+        this.statsFile = PluginOptions.findOption(TranslationStats.STATS_OPTION, args, Path::of, null);
+        this.mappingFile = PluginOptions.findOption(SourceMapping.MAPPING_OPTION, args, Path::of, null);
+        this.compileCommandsFile = PluginOptions.findOption(CompileCommands.COMPILE_COMMANDS_OPTION, args, Path::of, null);
+        this.compileCommands = compileCommandsFile != null || PluginOptions.hasFlag(CompileCommands.COMPILE_COMMANDS_OPTION, args);
+        var scope = new DesugarScope(args);
+        var budget = new InlineBudget(args);
+        var profile = manager.profile().load(PluginOptions.findOptions(CallSiteProfile.PROFILE_OPTION, args));
+        this.metadata = new DesugarMetadata(simpleMaker, Annotate.instance(context));
+        if(!debugTools.skip()){
+            loadMetadataOnCompletion(Symtab.class, symtab);
+        }
+
+        this.hierarchy = new HierarchyAnalyzer(simpleMaker, types, manager, scope);
+        this.translator = new OptionalTranslator(simpleMaker, types, manager, scope, budget, metadata, debugTools.fuse() || budget.enabled() || profile.hasSamples(), PluginOptions.hasFlag(PresenceBits.PRESENCE_BITS_FLAG, args));
+        this.analysisFile = PluginOptions.findOption(ImpactReport.ANALYZE_OPTION, args, Path::of, null);
+        this.analyzer = analysisFile == null ? null : new ImpactAnalyzer(simpleMaker, manager, scope, debugTools.fuse());
         task.addTaskListener(this);
     }
 
+    @Override
+    public void started(TaskEvent event) {
+        if(debugTools.skip()){
+            return;
+        }
+
+        if(event.getKind() == TaskEvent.Kind.ANNOTATION_PROCESSING){
+            loadMetadataOnCompletion(JavacProcessingEnvironment.class, JavacProcessingEnvironment.instance(context));
+            return;
+        }
+
+        if(event.getKind() == TaskEvent.Kind.ANALYZE){
+            hierarchy.enterUnit((JCTree.JCCompilationUnit) event.getCompilationUnit());
+        }
+    }
+
     @Override
     public void finished(TaskEvent event) {
+        if (event.getKind() == TaskEvent.Kind.COMPILATION) {
+            release();
+            return;
+        }
+
+        if (event.getKind() == TaskEvent.Kind.ENTER) {
+            attributeBeforeTranslating();
+            return;
+        }
+
         if (event.getKind() != TaskEvent.Kind.ANALYZE) {
             return;
         }
@@ -59,7 +134,17 @@ public class OptionalPlugin implements Plugin, TaskListener {
             return;
         }
 
-        translator.translate(unit);
+        metadata.restore();
+        if(analyzer != null){
+            analyzer.analyzeUnit(unit);
+            return;
+        }
+
+        hierarchy.analyze();
+        if(!translator.translateUnit(unit)){
+            return;
+        }
+
         debugTools.debug(() -> System.err.println(unit));
     }
 
@@ -68,9 +153,63 @@ public class OptionalPlugin implements Plugin, TaskListener {
         return true;
     }
 
-    private OptionalManager initializeManager(Maker simpleMaker) {
-        return OptionalManager.instance()
-                .addTransformer(new BangTransformer(simpleMaker))
+    @SneakyThrows
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private void attributeBeforeTranslating() {
+        if(debugTools.skip() || analyzer != null || Todo.instance(context).size() < 2){
+            return;
+        }
+
+        var compiler = JavaCompiler.instance(context);
+        var policy = JavaCompiler.class.getDeclaredField("compilePolicy").opened();
+        policy.set(compiler, Enum.valueOf((Class) policy.getType(), "SIMPLE"));
+    }
+
+    @SneakyThrows
+    private void loadMetadataOnCompletion(Class<?> owner, Object instance) {
+        var completer = owner.getDeclaredField("initialCompleter").opened();
+        completer.set(instance, metadata.wrap((Symbol.Completer) completer.get(instance)));
+    }
+
+    private void release() {
+        var manager = OptionalManager.instance(context);
+        var stats = manager.stats();
+        debugTools.debug(() -> System.err.println(stats));
+        if(statsFile != null){
+            stats.write(statsFile);
+        }
+
+        if(mappingFile != null){
+            manager.mappings().write(mappingFile);
+        }
+
+        if(compileCommands){
+            writeCompileCommands(manager);
+        }
+
+        if(analyzer != null){
+            analyzer.report().write(analysisFile);
+        }
+
+        OptionalManager.release(context);
+        this.context = null;
+        this.translator = null;
+        this.analyzer = null;
+        this.metadata = null;
+        this.hierarchy = null;
+    }
+
+    private void writeCompileCommands(OptionalManager manager) {
+        if(compileCommandsFile != null){
+            manager.compileCommands().write(compileCommandsFile);
+            return;
+        }
+
+        manager.compileCommands().write(context.get(JavaFileManager.class));
+    }
+
+    private void initializeManager(OptionalManager manager, Maker simpleMaker) {
+        manager.addTransformer(new BangTransformer(simpleMaker))
                 .addTransformer(new ConditionalTransformer(simpleMaker))
                 .addTransformer(new ValueTransformer(simpleMaker))
                 .addTransformer(new ElvisTransformer(simpleMaker))
@@ -78,6 +217,9 @@ public class OptionalPlugin implements Plugin, TaskListener {
                 .addTransformer(new MapTransformer(simpleMaker))
                 .addTransformer(new NamedConstructorTransformer(simpleMaker))
                 .addTransformer(new OrTransformer(simpleMaker))
-                .addTransformer(new StreamTransformer(simpleMaker));
+                .addTransformer(new PrimitiveStreamTransformer(simpleMaker))
+                .addTransformer(new StreamTransformer(simpleMaker))
+                .addTransformer(new ObjectTransformer(simpleMaker))
+                .loadTransformers(OptionalPlugin.class.getClassLoader(), simpleMaker);
     }
 }
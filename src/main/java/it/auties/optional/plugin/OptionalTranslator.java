@@ -1,34 +1,120 @@
 package it.auties.optional.plugin;
 
+import com.sun.tools.javac.code.Flags;
+import com.sun.tools.javac.code.Kinds;
 import com.sun.tools.javac.code.Symbol;
 import com.sun.tools.javac.code.Type;
+import com.sun.tools.javac.code.TypeTag;
 import com.sun.tools.javac.code.Types;
 import com.sun.tools.javac.tree.JCTree;
 import com.sun.tools.javac.tree.TreeInfo;
+import com.sun.tools.javac.tree.TreeScanner;
 import com.sun.tools.javac.tree.TreeTranslator;
 import com.sun.tools.javac.util.List;
+import it.auties.optional.event.TransformationEvent;
+import it.auties.optional.event.UnitTranslationEvent;
 import it.auties.optional.transformer.OptionalTransformer;
+import it.auties.optional.tree.BytecodeEstimator;
+import it.auties.optional.tree.ChainFuser;
+import it.auties.optional.tree.DesugarMetadata;
+import it.auties.optional.tree.ElementEncoder;
 import it.auties.optional.tree.Elements;
 import it.auties.optional.tree.Maker;
+import it.auties.optional.tree.OptionalScanner;
+import it.auties.optional.tree.PresenceBits;
+import it.auties.optional.tree.RecordMembers;
+import it.auties.optional.tree.StreamStages;
+import it.auties.optional.tree.TwinMethods;
+import it.auties.optional.util.DesugarScope;
 import it.auties.optional.util.IllegalReflection;
+import it.auties.optional.util.InlineBudget;
 import it.auties.optional.util.OptionalManager;
-import lombok.RequiredArgsConstructor;
 import lombok.experimental.ExtensionMethod;
 
+import java.util.HashSet;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 
 import static com.sun.tools.javac.tree.TreeInfo.symbolFor;
 import static com.sun.tools.javac.util.List.nil;
 
-@RequiredArgsConstructor
 @ExtensionMethod(IllegalReflection.class)
 public class OptionalTranslator extends TreeTranslator {
     private final Maker maker;
     private final Types types;
     private final OptionalManager manager;
+    private final ChainFuser fuser;
+    private final OptionalScanner scanner;
+    private final DesugarScope scope;
+    private final BoundaryTranslator boundary;
+    private final InlineBudget budget;
+    private final BytecodeEstimator estimator;
+    private final AllocationChecker checker;
+    private final DesugarMetadata metadata;
+    private final RecordMembers records;
+    private final PresenceBits bits;
+    private final StreamStages streams;
+    private final TwinMethods twins;
+    private final Set<JCTree> optionalArguments;
+    private final ElementEncoder elements;
+    private JCTree.JCCompilationUnit unit;
     private JCTree.JCClassDecl enclosingClass;
     private JCTree.JCMethodDecl enclosingMethod;
+    private Symbol.MethodSymbol blockOwner;
+    private int enclosingMethodSize;
+    private List<JCTree.JCMethodDecl> twinMethods;
+
+    public OptionalTranslator(Maker maker, Types types, OptionalManager manager, DesugarScope scope, InlineBudget budget, DesugarMetadata metadata, boolean fuseChains, boolean packPresence) {
+        this.maker = maker;
+        this.types = types;
+        this.manager = manager;
+        this.scope = scope;
+        this.fuser = fuseChains ? new ChainFuser(maker, this::translate) : null;
+        this.scanner = new OptionalScanner(maker);
+        this.budget = budget;
+        this.estimator = new BytecodeEstimator();
+        this.checker = new AllocationChecker(maker, manager);
+        this.metadata = metadata;
+        this.records = new RecordMembers(maker, manager);
+        this.bits = new PresenceBits(maker, scope, packPresence);
+        this.boundary = new BoundaryTranslator(maker, types, manager, scope, bits, metadata);
+        this.streams = new StreamStages(maker, types);
+        this.twins = new TwinMethods(maker, types, manager, scope);
+        this.optionalArguments = new HashSet<>();
+        this.elements = new ElementEncoder(maker, types, streams);
+    }
+
+    public boolean translateUnit(JCTree.JCCompilationUnit unit) {
+        var event = new UnitTranslationEvent();
+        event.begin();
+        var start = System.nanoTime();
+        var generated = manager.stats().generatedMethods();
+        var skipped = !scanner.containsOptional(unit);
+        manager.stats().visitUnit(skipped);
+        if(!skipped){
+            var previousSource = maker.log().useSource(unit.getSourceFile());
+            manager.mappings().enter(unit);
+            this.unit = unit;
+            translate(unit);
+            checker.check(unit);
+            optionalArguments.clear();
+            elements.clear();
+            this.unit = null;
+            maker.log().useSource(previousSource);
+        }
+
+        var sourceFile = unit.getSourceFile().getName();
+        manager.stats().recordUnit(sourceFile, System.nanoTime() - start);
+        if(event.shouldCommit()){
+            event.sourceFile(sourceFile)
+                    .skipped(skipped)
+                    .generatedMethods(countGeneratedSince(generated))
+                    .commit();
+        }
+
+        return !skipped;
+    }
 
     @Override
     public <T extends JCTree> T translate(T tree) {
@@ -38,6 +124,10 @@ public class OptionalTranslator extends TreeTranslator {
 
     @Override
     public <T extends JCTree> List<T> translate(List<T> trees) {
+        if(trees == null){
+            return null;
+        }
+
         trees.forEach(this::removeOptional);
         return super.translate(trees);
     }
@@ -65,7 +155,7 @@ public class OptionalTranslator extends TreeTranslator {
         }
 
         var element = type.asElement();
-        if(element == null || !maker.hasOptionalName(element.getQualifiedName())){
+        if(element == null || !maker.hasOptionalName(element.getQualifiedName()) || isForeign(tree)){
             return;
         }
 
@@ -74,23 +164,84 @@ public class OptionalTranslator extends TreeTranslator {
 
     @Override
     public void visitClassDef(JCTree.JCClassDecl tree) {
+        var previousClass = enclosingClass;
+        var previousTwins = twinMethods;
+        var previousBlockOwner = blockOwner;
+        var previousScope = manager.names().enter(tree.sym, "init");
+        if(previousClass == null){
+            bits.layout(tree);
+        }
+
         this.enclosingClass = tree;
-        super.visitClassDef(tree);
-        tree.defs = tree.defs.appendList(List.from(manager.generatedLambdas()));
-        manager.generatedLambdas().forEach(lambda -> tree.sym.members().enter(lambda.sym));
-        manager.cleanLambdas();
+        this.blockOwner = new Symbol.MethodSymbol(Flags.BLOCK, maker.names().empty, null, tree.sym);
+        this.twinMethods = List.nil();
+        if(scope.includes(tree.sym) && tree.sym.isRecord()){
+            bits.moveInitializers(tree);
+            records.materialize(tree);
+            super.visitClassDef(tree);
+            records.updateComponents(tree);
+            bits.declare(tree);
+        }else if(scope.includes(tree.sym)){
+            bits.moveInitializers(tree);
+            super.visitClassDef(tree);
+            bits.declare(tree);
+        }else {
+            tree.defs = tree.defs.map(this::translateExcludedMember);
+            this.result = tree;
+        }
+
+        twinMethods.forEach(twin -> tree.defs = tree.defs.append(twin));
+        twinMethods.forEach(twin -> tree.sym.members().enter(twin.sym));
+        var lambdas = manager.removeLambdas(tree.sym);
+        manager.stats().recordGeneratedMembers(tree.sym.flatname.toString(), lambdas.size());
+        lambdas.forEach(lambda -> manager.stats().recordMethodSize(memberName(lambda), 0, estimator.estimate(lambda)));
+        tree.defs = tree.defs.appendList(List.from(lambdas));
+        lambdas.forEach(lambda -> tree.sym.members().enter(lambda.sym));
+        manager.names().exit(previousScope);
+        this.twinMethods = previousTwins;
+        this.blockOwner = previousBlockOwner;
+        this.enclosingClass = previousClass;
+    }
+
+    private JCTree translateExcludedMember(JCTree member) {
+        if(member instanceof JCTree.JCMethodDecl || member instanceof JCTree.JCClassDecl){
+            return translate(member);
+        }
+
+        return boundary.translate(member, enclosingClass.sym);
     }
 
     @Override
     public void visitVarDef(JCTree.JCVariableDecl tree) {
+        var rawLocal = tree.sym.owner.kind == Kinds.Kind.MTH
+                && enclosingMethod != null
+                && isOptionalClass(tree.sym)
+                && isRawSource(tree.init)
+                && elements.keepRawLocal(tree, enclosingMethod.body);
         super.visitVarDef(tree);
         if(!isOptionalClass(tree.sym)){
             return;
         }
 
+        if(rawLocal){
+            manager.recordOriginalType(tree.sym);
+            tree.sym.type = maker.symtab().objectType;
+            tree.vartype = maker.typeExpression(maker.symtab().objectType);
+            return;
+        }
+
+        if(tree.sym.owner.kind == Kinds.Kind.TYP && scope.exports(tree.sym)){
+            tree.init = tree.init == null ? null : wrap(tree.init, tree.sym.type);
+            return;
+        }
+
+        manager.recordOriginalType(tree.sym);
         var optionalType = findOptionalVariableType(tree);
         tree.sym.type = optionalType;
         tree.vartype = maker.typeExpression(optionalType);
+        if(tree.sym.owner.kind == Kinds.Kind.TYP){
+            metadata.record(tree.sym);
+        }
     }
 
     private Type findOptionalVariableType(JCTree.JCVariableDecl variable){
@@ -105,8 +256,51 @@ public class OptionalTranslator extends TreeTranslator {
 
     @Override
     public void visitMethodDef(JCTree.JCMethodDecl tree) {
+        var previousMethod = enclosingMethod;
         this.enclosingMethod = tree;
+        translateMethod(tree);
+        this.enclosingMethod = previousMethod;
+    }
+
+    private void translateMethod(JCTree.JCMethodDecl tree) {
+        var skipped = !scanner.containsOptional(tree);
+        manager.stats().visitMethod(skipped);
+        if(skipped){
+            this.result = tree;
+            return;
+        }
+
+        var previousScope = manager.names().enter(enclosingClass.sym, tree.name == maker.names().init ? "new" : tree.name.toString());
+        if(!scope.includes(twins.declaredSymbol(tree.sym))){
+            this.result = boundary.translate(tree, tree.sym);
+            manager.names().exit(previousScope);
+            return;
+        }
+
+        if(scope.exports(tree.sym) && twins.hasOptionalSignature(tree.sym)){
+            manager.names().exit(previousScope);
+            this.result = preserveSignature(tree);
+            return;
+        }
+
+        manager.recordOriginalType(tree.sym);
+        var optionalParameters = tree.params.stream().anyMatch(parameter -> isOptionalClass(parameter.sym));
+        var previousMethodSize = enclosingMethodSize;
+        var size = estimator.estimate(tree);
+        this.enclosingMethodSize = size;
         super.visitMethodDef(tree);
+        this.enclosingMethodSize = previousMethodSize;
+        checkMethodSize(tree, size);
+        manager.names().exit(previousScope);
+        if(optionalParameters){
+            translateParameterTypes(tree);
+        }
+
+        translateReturnType(tree);
+        metadata.record(tree.sym);
+    }
+
+    private void translateReturnType(JCTree.JCMethodDecl tree) {
         var returnType = findMethodReturnType(tree);
         if(!isOptionalClass(returnType.asElement())){
             return;
@@ -114,8 +308,39 @@ public class OptionalTranslator extends TreeTranslator {
 
         var optionalType = maker.unboxWrapper(returnType);
         tree.restype = maker.typeExpression(optionalType);
-        ((Type.MethodType) tree.type).restype = optionalType;
-        ((Type.MethodType) tree.sym.type).restype = optionalType;
+        tree.type.asMethodType().restype = optionalType;
+        tree.sym.type.asMethodType().restype = optionalType;
+        tree.sym.erasure_field = null;
+    }
+
+    private JCTree.JCMethodDecl preserveSignature(JCTree.JCMethodDecl tree) {
+        if(!twins.hasTwin(tree.sym)){
+            return boundary.translate(tree, tree.sym);
+        }
+
+        var twin = twins.createTwin(tree);
+        this.twinMethods = twinMethods.append(translate(twin));
+        return tree;
+    }
+
+    private void checkMethodSize(JCTree.JCMethodDecl tree, int before) {
+        var after = estimator.estimate(tree);
+        var crossedLimit = budget.crossedLimit(before, after)
+                .filter(limit -> !records.isMaterialized(tree.sym) && (tree.sym.flags() & Flags.GENERATEDCONSTR) == 0);
+        manager.stats().recordMethodSize(memberName(tree), before, after, crossedLimit.orElse(null));
+        crossedLimit.filter(budget::warns)
+                .ifPresent(limit -> maker.log().rawWarning(tree.pos, "warning: desugaring grew %s from ~%s to ~%s bytes of bytecode, past %s".formatted(tree.name, before, after, limit)));
+    }
+
+    private String memberName(JCTree.JCMethodDecl tree) {
+        return "%s.%s".formatted(tree.sym.owner.flatName(), tree.name);
+    }
+
+    private void translateParameterTypes(JCTree.JCMethodDecl tree) {
+        var parameterTypes = tree.params.map(parameter -> parameter.sym.type);
+        tree.type.asMethodType().argtypes = parameterTypes;
+        tree.sym.type.asMethodType().argtypes = parameterTypes;
+        tree.sym.erasure_field = null;
     }
 
     private Type findMethodReturnType(JCTree.JCMethodDecl method){
@@ -126,24 +351,439 @@ public class OptionalTranslator extends TreeTranslator {
 
     @Override
     public void visitApply(JCTree.JCMethodInvocation tree) {
+        var packed = readPresenceBits(tree);
+        if(packed.isPresent()){
+            this.result = packed.get();
+            return;
+        }
+
+        var stage = fuseStreamStage(tree);
+        if(stage.isPresent()){
+            this.result = stage.get();
+            return;
+        }
+
+        var fused = fuseChain(tree);
+        if(fused.isPresent()){
+            this.result = fused.get();
+            return;
+        }
+
+        var argumentTypes = tree.args.map(argument -> argument.type);
+        Type originalCallerType = null;
+        if(isOwnedByOptional(symbolFor(tree))){
+            originalCallerType = Elements.getCallerExpression(tree).type;
+            optionalArguments.addAll(tree.args);
+        }
+
         super.visitApply(tree);
         var selected = symbolFor(tree);
         if (!isOwnedByOptional(selected)) {
+            if(twins.redirectsToTwin(selected, enclosingClass.sym)){
+                twins.redirectToTwin(tree, selected);
+                return;
+            }
+
+            bridgeInvocation(tree, selected, argumentTypes);
             return;
         }
 
         var caller = Elements.getCallerExpression(tree);
-        this.result = desugarOptionalInvocation(caller, caller.type, selected, tree.getArguments());
+        this.result = desugarOptionalInvocation(tree, caller, desugaredCallerType(caller, originalCallerType), selected, tree.getArguments(), argumentTypes);
+    }
+
+    private Type desugaredCallerType(JCTree.JCExpression caller, Type originalType) {
+        return caller.type.hasTag(TypeTag.BOT) && isOptionalType(originalType) ? maker.unboxWrapper(originalType) : caller.type;
+    }
+
+    private Optional<JCTree.JCExpression> readPresenceBits(JCTree.JCMethodInvocation tree) {
+        var selected = symbolFor(tree);
+        if(!isOwnedByOptional(selected) || !(TreeInfo.skipParens(tree.meth) instanceof JCTree.JCFieldAccess access) || !bits.isPacked(TreeInfo.symbol(access.selected))){
+            return Optional.empty();
+        }
+
+        var instruction = selected.name.toString();
+        var read = switch (instruction){
+            case "isPresent", "isEmpty" -> bits.createPresenceCheck(translate(access.selected), instruction.equals("isPresent"), currentOwner());
+            case "getAsInt", "getAsLong", "getAsDouble", "orElseThrow" -> tree.args.isEmpty() ? bits.createRead(translate(access.selected), createThrower(tree, selected), currentOwner()) : null;
+            case "orElse" -> bits.createRead(translate(access.selected), translate(tree.args.head), currentOwner());
+            default -> null;
+        };
+        if(read != null){
+            manager.stats().recordRewrite(instruction);
+        }
+
+        return Optional.ofNullable(read);
+    }
+
+    private Optional<JCTree.JCExpression> fuseStreamStage(JCTree.JCMethodInvocation tree) {
+        if(streams.isOptionalStage(tree, "map") && streams.isOptionalReference(tree.args.head, Set.of("get", "orElseThrow"))){
+            var filter = streams.receiver(tree);
+            return isPresenceFilter(filter) && isNullableMapper(streams.receiver(filter)) ? Optional.of(fuseNullableMapper(streams.receiver(filter), tree.type)) : Optional.empty();
+        }
+
+        if(isPresenceFilter(tree) && isNullableMapper(streams.receiver(tree))){
+            return Optional.of(fuseNullableMapper(streams.receiver(tree), tree.type));
+        }
+
+        if(streams.isOptionalStage(tree, "flatMap") && streams.isOptionalReference(tree.args.head, Set.of("stream"))){
+            var receiver = streams.receiver(tree);
+            if(isNullableMapper(receiver)){
+                return Optional.of(fuseNullableMapper(receiver, tree.type));
+            }
+
+            var elementType = streams.elementType(receiver);
+            var decoder = elements.createDecoder(elementType, tree.args.head.pos, currentOwner());
+            var decoded = streams.createStage(translate(receiver), "map", decoder, streams.createStreamType(maker.unboxWrapper(elementType)));
+            manager.stats().recordRewrite("stream");
+            return Optional.of(streams.createNonNullFilter(decoded, tree.type));
+        }
+
+        if(streams.isStage(tree, "flatMap") && streams.isStreamLambda(tree.args.head)){
+            var mapper = translate(streams.toNullableLambda((JCTree.JCLambda) tree.args.head));
+            var mapped = streams.createStage(translate(streams.receiver(tree)), "map", mapper, tree.type);
+            manager.stats().recordRewrite("stream");
+            return Optional.of(streams.createNonNullFilter(mapped, tree.type));
+        }
+
+        return Optional.empty();
+    }
+
+    private boolean isPresenceFilter(JCTree.JCExpression tree) {
+        return streams.isOptionalStage(tree, "filter") && streams.isOptionalReference(streams.argument(tree), Set.of("isPresent"));
+    }
+
+    private boolean isNullableMapper(JCTree.JCExpression tree) {
+        if(!streams.isStage(tree, "map") || streams.elementType(tree) == null){
+            return false;
+        }
+
+        var mapper = streams.argument(tree);
+        if(mapper instanceof JCTree.JCLambda){
+            return true;
+        }
+
+        return mapper instanceof JCTree.JCMemberReference reference
+                && reference.sym instanceof Symbol.MethodSymbol method
+                && !method.isConstructor()
+                && !isForeign(method)
+                && !isOwnedByOptional(method)
+                && !scope.exports(method)
+                && isOptionalType(manager.originalType(method).getReturnType());
+    }
+
+    private JCTree.JCExpression fuseNullableMapper(JCTree.JCExpression stage, Type resultType) {
+        var mapper = (JCTree.JCFunctionalExpression) streams.argument(stage);
+        streams.retargetNullable(mapper);
+        manager.stats().recordRewrite("stream");
+        return streams.createNonNullFilter(translate(stage), resultType);
+    }
+
+    private JCTree.JCExpression createThrower(JCTree.JCMethodInvocation tree, Symbol selected) {
+        var empty = maker.createEmptyValue(maker.unboxWrapper(selected.owner.type));
+        return desugarOptionalInvocation(tree, empty, empty.type, selected, nil(), nil());
+    }
+
+    private void bridgeInvocation(JCTree.JCMethodInvocation tree, Symbol selected, List<Type> argumentTypes) {
+        if(!isForeign(selected)){
+            translateInvocationType(tree);
+            return;
+        }
+
+        tree.args = wrapArguments(tree.args, argumentTypes, selected.type.getParameterTypes(), elements.hasElementReceiver(tree));
+        elements.eraseParameters(tree, selected);
+        if(isForeign(tree)){
+            this.result = elements.decode(tree, selected, currentOwner());
+        }
+    }
+
+    private void translateInvocationType(JCTree.JCMethodInvocation tree) {
+        if(!(tree.meth.type instanceof Type.MethodType methodType)){
+            return;
+        }
+
+        var parameterTypes = methodType.argtypes.map(this::unboxOptionalType);
+        var returnType = unboxOptionalType(methodType.restype);
+        if(parameterTypes.equals(methodType.argtypes) && returnType == methodType.restype){
+            return;
+        }
+
+        tree.meth.type = new Type.MethodType(parameterTypes, returnType, methodType.thrown, methodType.tsym);
+    }
+
+    private Type unboxOptionalType(Type type) {
+        return isOptionalType(type) ? maker.unboxWrapper(type) : type;
+    }
+
+    @Override
+    public void visitNewClass(JCTree.JCNewClass tree) {
+        var argumentTypes = tree.args.map(argument -> argument.type);
+        super.visitNewClass(tree);
+        if(isForeign(tree.constructor)){
+            tree.args = wrapArguments(tree.args, argumentTypes, tree.constructor.type.getParameterTypes(), false);
+        }
+    }
+
+    @Override
+    public void visitIdent(JCTree.JCIdent tree) {
+        super.visitIdent(tree);
+        metadata.checkSentinels(tree, tree.sym);
+        if(elements.isRawLocal(tree.sym)){
+            this.result = elements.decodeLocal(tree, manager.originalType(tree.sym), currentOwner());
+            return;
+        }
+
+        if(isForeignField(tree.sym)){
+            this.result = maker.createUnwrap(tree, tree.type);
+        }
+    }
+
+    @Override
+    public void visitSelect(JCTree.JCFieldAccess tree) {
+        super.visitSelect(tree);
+        metadata.checkSentinels(tree, tree.sym);
+        if(isForeignField(tree.sym)){
+            this.result = maker.createUnwrap(tree, tree.type);
+        }
+    }
+
+    @Override
+    public void visitExec(JCTree.JCExpressionStatement tree) {
+        if(!(TreeInfo.skipParens(tree.expr) instanceof JCTree.JCAssign assignment) || !bits.isPacked(TreeInfo.symbol(assignment.lhs))){
+            super.visitExec(tree);
+            return;
+        }
+
+        if(bits.isConditionalWrite(assignment)){
+            this.result = translate(bits.splitConditionalWrite(assignment));
+            return;
+        }
+
+        var present = bits.findPresence(assignment.rhs);
+        this.result = bits.createWriteStatement(translate(assignment.lhs), translate(assignment.rhs), present, currentOwner());
+    }
+
+    @Override
+    public void visitAssign(JCTree.JCAssign tree) {
+        var assigned = TreeInfo.symbol(tree.lhs);
+        if(bits.isPacked(assigned)){
+            var present = bits.findPresence(tree.rhs);
+            this.result = bits.createWrite(translate(tree.lhs), translate(tree.rhs), present, currentOwner());
+            return;
+        }
+
+        if(elements.isRawLocal(assigned)){
+            var raw = isRawSource(tree.rhs);
+            if(raw){
+                elements.keepRaw(tree.rhs);
+            }
+
+            var value = translate(tree.rhs);
+            tree.rhs = raw || TreeInfo.isNull(value) ? value : elements.encode(value, manager.originalType(assigned), currentOwner());
+            tree.lhs.type = maker.symtab().objectType;
+            tree.type = maker.symtab().objectType;
+            this.result = tree;
+            return;
+        }
+
+        if(!isForeignField(assigned)){
+            super.visitAssign(tree);
+            return;
+        }
+
+        if(tree.lhs instanceof JCTree.JCFieldAccess access){
+            access.selected = translate(access.selected);
+        }
+
+        tree.rhs = wrap(translate(tree.rhs), assigned.type);
+        this.result = tree;
+    }
+
+    private List<JCTree.JCExpression> wrapArguments(List<JCTree.JCExpression> arguments, List<Type> argumentTypes, List<Type> parameterTypes, boolean elementReceiver) {
+        var result = List.<JCTree.JCExpression>nil();
+        for(var argument : arguments){
+            var argumentType = argumentTypes.isEmpty() ? null : argumentTypes.head;
+            var parameterType = parameterTypes.isEmpty() ? null : parameterTypes.head;
+            result = result.append(wrapArgument(argument, argumentType, parameterType, elementReceiver));
+            argumentTypes = argumentTypes.isEmpty() ? argumentTypes : argumentTypes.tail;
+            parameterTypes = parameterTypes.size() <= 1 ? parameterTypes : parameterTypes.tail;
+        }
+
+        return result;
+    }
+
+    private JCTree.JCExpression wrapArgument(JCTree.JCExpression argument, Type argumentType, Type parameterType, boolean elementReceiver) {
+        if(isOptionalType(parameterType)){
+            return wrap(argument, parameterType);
+        }
+
+        if(!isOptionalType(argumentType) || parameterType == null){
+            return argument;
+        }
+
+        return elements.encodesArgument(parameterType, elementReceiver) ? elements.encode(argument, argumentType, currentOwner()) : wrap(argument, argumentType);
+    }
+
+    private JCTree.JCExpression wrap(JCTree.JCExpression value, Type optionalType) {
+        if(isWrapped(value)){
+            return value;
+        }
+
+        return maker.createWrap(value, types.erasure(optionalType), currentOwner());
+    }
+
+    private Symbol currentOwner() {
+        if(enclosingMethod != null){
+            return enclosingMethod.sym;
+        }
+
+        return blockOwner;
+    }
+
+    private boolean isWrapped(JCTree.JCExpression value) {
+        return (value instanceof JCTree.LetExpr && isOptionalType(value.type))
+                || (value instanceof JCTree.JCMethodInvocation invocation && isOwnedByOptional(symbolFor(invocation)));
+    }
+
+    private boolean isForeign(JCTree tree) {
+        if(tree instanceof JCTree.JCMethodInvocation invocation){
+            var selected = symbolFor(invocation);
+            return isForeign(selected) && (isOptionalType(selected.type.getReturnType()) || isOptionalType(invocation.type));
+        }
+
+        return (tree instanceof JCTree.JCIdent || tree instanceof JCTree.JCFieldAccess)
+                && isForeignField(TreeInfo.symbol(tree));
+    }
+
+    private boolean isForeignField(Symbol symbol) {
+        return symbol instanceof Symbol.VarSymbol
+                && symbol.owner.kind == Kinds.Kind.TYP
+                && isOptionalType(symbol.type)
+                && isForeign(symbol);
+    }
+
+    private boolean isForeign(Symbol symbol) {
+        return symbol instanceof Symbol.MethodSymbol || symbol instanceof Symbol.VarSymbol
+                ? !isOwnedByOptional(symbol) && !scope.desugars(symbol) && !manager.isImported(symbol)
+                : false;
+    }
+
+    private boolean isOptionalType(Type type) {
+        return type != null && type.tsym != null && maker.hasOptionalName(type.tsym.getQualifiedName());
+    }
+
+    private Optional<JCTree.JCExpression> fuseChain(JCTree.JCMethodInvocation tree) {
+        if(fuser == null || !isOwnedByOptional(symbolFor(tree))){
+            return Optional.empty();
+        }
+
+        var growth = estimator.estimateInlined(tree) - estimator.estimate(tree);
+        if(!budget.allows(enclosingMethodSize, growth) || !isHot(tree)){
+            return Optional.empty();
+        }
+
+        var fused = fuser.fuse(tree, enclosingMethod);
+        if(fused.isPresent()){
+            this.enclosingMethodSize += growth;
+            manager.stats().recordRewrite("fused");
+        }
+
+        return fused;
+    }
+
+    private boolean isHot(JCTree tree) {
+        var profile = manager.profile();
+        return !profile.hasSamples() || profile.isHot(enclosingClass.sym.flatname.toString(), unit.getLineMap().getLineNumber(tree.pos));
+    }
+
+    @Override
+    public void visitLambda(JCTree.JCLambda tree) {
+        var parameterTypes = tree.params.map(parameter -> parameter.sym.type);
+        super.visitLambda(tree);
+        if(optionalArguments.remove(tree) || tree.target == null){
+            return;
+        }
+
+        var descriptor = types.findDescriptorSymbol(tree.target.tsym);
+        if(!isForeign(descriptor)){
+            return;
+        }
+
+        var returnType = types.findDescriptorType(tree.target).getReturnType();
+        var elementParameters = elements.decodeParameters(tree, parameterTypes, returnType);
+        var element = elements.returnsElement(tree);
+        if(elementParameters || element){
+            elements.eraseTarget(tree);
+        }
+
+        if(!isOptionalType(returnType)){
+            return;
+        }
+
+        if(tree.getBodyKind() == JCTree.JCLambda.BodyKind.EXPRESSION){
+            tree.body = wrapResult((JCTree.JCExpression) tree.body, returnType, element);
+            return;
+        }
+
+        new TreeScanner(){
+            @Override
+            public void visitReturn(JCTree.JCReturn tree) {
+                tree.expr = wrapResult(tree.expr, returnType, element);
+            }
+
+            @Override
+            public void visitLambda(JCTree.JCLambda tree) {
+
+            }
+
+            @Override
+            public void visitClassDef(JCTree.JCClassDecl tree) {
+
+            }
+        }.scan(tree.body);
+    }
+
+    private JCTree.JCExpression wrapResult(JCTree.JCExpression value, Type optionalType, boolean element) {
+        return element ? elements.encode(value, optionalType, currentOwner()) : wrap(value, optionalType);
+    }
+
+    @Override
+    public void visitForeachLoop(JCTree.JCEnhancedForLoop tree) {
+        var variableType = tree.var.sym.type;
+        super.visitForeachLoop(tree);
+        if(!isOptionalType(variableType) || isOptionalType(tree.var.sym.type) || types.elemtype(tree.expr.type) != null){
+            return;
+        }
+
+        elements.decodeVariable(tree, variableType);
     }
 
     @Override
     public void visitReference(JCTree.JCMemberReference tree) {
         super.visitReference(tree);
+        metadata.checkSentinels(tree, tree.sym);
+        if(isElementReference(tree)){
+            this.result = elements.bridgeReference(tree, currentOwner(), this::translateInvocationType);
+            manager.stats().recordRewrite("element");
+            return;
+        }
+
+        if(isOptionalElementReference(tree)){
+            this.result = maker.isPrimitiveOptional(tree.sym.owner.type) ? tree : bridgeOptionalReference(tree);
+            return;
+        }
+
         if (!isOwnedByOptional(tree.sym)) {
             return;
         }
 
-        var invocation = desugarOptionalInvocation(null, Elements.getReturnType(tree.referentType), tree.sym, nil());
+        var transformer = manager.transformers().find(tree.sym, nil());
+        if(transformer.isEmpty() || tree.kind == JCTree.JCMemberReference.ReferenceKind.BOUND){
+            this.result = boxReference(tree);
+            return;
+        }
+
+        var invocation = transformTree(transformer.get(), tree, null, Elements.getReturnType(tree.referentType), tree.sym, nil(), nil());
         var invocationSymbol = TreeInfo.symbolFor(invocation);
         var reference = maker.reference(invocationSymbol, enclosingClass.sym);
         var referenceType = (Type.ClassType) tree.type;
@@ -156,30 +796,150 @@ public class OptionalTranslator extends TreeTranslator {
         this.result = reference;
     }
 
+    private boolean isElementReference(JCTree.JCMemberReference tree) {
+        if(optionalArguments.contains(tree) || tree.target == null || tree.varargsElement != null || !(tree.sym instanceof Symbol.MethodSymbol method) || method.isConstructor()){
+            return false;
+        }
+
+        if(isForeign(method) || isOwnedByOptional(method) || scope.exports(method) || !isOptionalType(manager.originalType(method).getReturnType())){
+            return false;
+        }
+
+        return isForeign(types.findDescriptorSymbol(tree.target.tsym))
+                && elements.returnsElement(tree)
+                && (tree.kind != JCTree.JCMemberReference.ReferenceKind.BOUND || TreeInfo.name(tree.expr) == maker.names()._this);
+    }
+
+    private boolean isOptionalElementReference(JCTree.JCMemberReference tree) {
+        if(optionalArguments.contains(tree) || tree.target == null || tree.kind != JCTree.JCMemberReference.ReferenceKind.UNBOUND || !isOwnedByOptional(tree.sym)){
+            return false;
+        }
+
+        return isForeign(types.findDescriptorSymbol(tree.target.tsym)) && elements.acceptsElement(tree);
+    }
+
+    private JCTree.JCLambda bridgeOptionalReference(JCTree.JCMemberReference tree) {
+        var parameterTypes = types.findDescriptorType(tree.target).getParameterTypes().tail;
+        return elements.bridgeOptionalReference(tree, currentOwner(), (invocation, value) -> desugarOptionalInvocation(invocation, value, value.type, tree.sym, invocation.args, parameterTypes));
+    }
+
     private List<Type> translateReferenceType(JCTree.JCExpression invocation, Type.ClassType referenceType) {
         return referenceType.typarams_field.stream()
                 .map(type -> maker.hasOptionalName(type.asElement().getQualifiedName()) ? maker.boxed(Elements.getReturnType(invocation.type)) : type)
                 .collect(List.collector());
     }
 
-    private JCTree.JCExpression desugarOptionalInvocation(JCTree.JCExpression caller, Type callerType, Symbol selected, List<JCTree.JCExpression> arguments) {
-        var selectedName = selected.getSimpleName().toString();
+    private JCTree.JCExpression boxReference(JCTree.JCMemberReference tree) {
+        if(tree.kind != JCTree.JCMemberReference.ReferenceKind.BOUND){
+            maker.log().rawError(tree.pos, "error: %s.%s cannot be desugared when it's referenced without a receiver".formatted(tree.sym.owner.getSimpleName(), tree.sym.name));
+            return tree;
+        }
+
+        warnBoxing(tree, tree.sym);
+        var optionalType = maker.createOptionalType((Symbol.ClassSymbol) tree.sym.owner, maker.unboxWrapper(tree.expr.type));
+        tree.expr = wrap(tree.expr, optionalType);
+        manager.stats().recordRewrite("boxed");
+        return tree;
+    }
+
+    @Override
+    public void visitBinary(JCTree.JCBinary tree) {
+        var leftType = tree.lhs.type;
+        var rightType = tree.rhs.type;
+        var concatenation = tree.hasTag(JCTree.Tag.PLUS) && types.isSameType(tree.type, maker.symtab().stringType);
+        var rawLeft = concatenation && isRawSource(tree.lhs);
+        var rawRight = concatenation && isRawSource(tree.rhs);
+        elements.markRawComparison(tree);
+        if(rawLeft){
+            elements.keepRaw(tree.lhs);
+        }
+
+        if(rawRight){
+            elements.keepRaw(tree.rhs);
+        }
+
+        super.visitBinary(tree);
+        if(!concatenation){
+            return;
+        }
+
+        tree.lhs = rawLeft ? elements.concatenate(tree.lhs, leftType, currentOwner(), operand -> desugarConcatenation(operand, leftType)) : desugarConcatenation(tree.lhs, leftType);
+        tree.rhs = rawRight ? elements.concatenate(tree.rhs, rightType, currentOwner(), operand -> desugarConcatenation(operand, rightType)) : desugarConcatenation(tree.rhs, rightType);
+    }
+
+    private boolean isRawSource(JCTree.JCExpression expression) {
+        if(expression == null){
+            return false;
+        }
+
+        var value = TreeInfo.skipParens(expression);
+        return value instanceof JCTree.JCIdent identifier ? elements.isRawLocal(identifier.sym)
+                : value instanceof JCTree.JCMethodInvocation invocation && isForeign(invocation) && elements.isElementRead(symbolFor(invocation));
+    }
+
+    private JCTree.JCExpression desugarConcatenation(JCTree.JCExpression operand, Type originalType) {
+        if(!isOptionalType(originalType) || isOptionalType(operand.type)){
+            return operand;
+        }
+
+        var selected = maker.symbols().member(originalType.tsym, "toString");
+        var invocation = maker.trees()
+                .at(operand.pos)
+                .App(maker.trees().Select(operand, selected), nil());
+        return desugarOptionalInvocation(invocation, operand, desugaredCallerType(operand, originalType), selected, nil(), nil());
+    }
+
+    private JCTree.JCExpression desugarOptionalInvocation(JCTree.JCMethodInvocation invocation, JCTree.JCExpression caller, Type callerType, Symbol selected, List<JCTree.JCExpression> arguments, List<Type> argumentTypes) {
         return manager.transformers()
-                .stream()
-                .filter(transformer -> transformer.supportedInstructions().contains(selectedName))
-                .findFirst()
-                .map(transformer -> transformTree(transformer, caller, callerType, selectedName, arguments))
-                .orElseThrow(() -> new UnsupportedOperationException("No transformer could transform %s".formatted(selectedName)));
+                .find(selected, argumentTypes)
+                .map(transformer -> transformTree(transformer, invocation, caller, callerType, selected, arguments, argumentTypes))
+                .orElseGet(() -> boxInvocation(invocation, caller, callerType, selected, arguments, argumentTypes));
     }
 
-    private JCTree.JCExpression transformTree(OptionalTransformer transformer, JCTree.JCExpression caller, Type callerType, String selectedName, List<JCTree.JCExpression> arguments) {
-        return transformer.instruction(selectedName)
+    private JCTree.JCExpression boxInvocation(JCTree.JCMethodInvocation invocation, JCTree.JCExpression caller, Type callerType, Symbol selected, List<JCTree.JCExpression> arguments, List<Type> argumentTypes) {
+        warnBoxing(invocation, selected);
+        var optionalType = maker.createOptionalType((Symbol.ClassSymbol) selected.owner, maker.unboxWrapper(callerType));
+        var select = maker.trees().Select(wrap(caller, optionalType), selected);
+        var boxed = maker.trees().App(select, wrapArguments(arguments, argumentTypes, selected.type.getParameterTypes(), false));
+        boxed.type = invocation.type;
+        manager.stats().recordRewrite("boxed");
+        return isOptionalType(boxed.type) ? maker.createUnwrap(boxed, boxed.type) : boxed;
+    }
+
+    private void warnBoxing(JCTree tree, Symbol selected) {
+        var owner = selected.owner.getSimpleName();
+        maker.log().rawWarning(tree.pos, "warning: %s.%s cannot be desugared, so the value is boxed into a real %s at this call site".formatted(owner, selected.name, owner));
+    }
+
+    private JCTree.JCExpression transformTree(OptionalTransformer transformer, JCTree invocation, JCTree.JCExpression caller, Type callerType, Symbol selected, List<JCTree.JCExpression> arguments, List<Type> argumentTypes) {
+        var event = new TransformationEvent();
+        event.begin();
+        var generated = manager.stats().generatedMethods();
+        var instruction = selected.getSimpleName().toString();
+        var result = transformer.instruction(instruction)
+                .invocationOwner((Symbol.ClassSymbol) selected.getEnclosingElement())
                 .enclosingClass(enclosingClass.sym)
                 .enclosingMethod(enclosingMethod)
                 .invocationCaller(caller)
                 .invocationCallerType(callerType)
                 .invocationArguments(arguments)
+                .invocationArgumentTypes(argumentTypes)
+                .invocationPosition(invocation.pos)
                 .transform();
+        manager.stats().recordRewrite(instruction);
+        if(event.shouldCommit()){
+            event.transformer(transformer.getClass().getSimpleName())
+                    .instruction(instruction)
+                    .enclosingClass(enclosingClass.sym.flatname.toString())
+                    .generatedMethods(countGeneratedSince(generated))
+                    .commit();
+        }
+
+        return result;
+    }
+
+    private int countGeneratedSince(int generated) {
+        return manager.stats().generatedMethods() - generated;
     }
 
     private boolean isOwnedByOptional(Symbol selected) {
@@ -0,0 +1,104 @@
+package it.auties.optional.runtime;
+
+import lombok.SneakyThrows;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+public final class OptionalCounters implements OptionalCountersMXBean {
+    public static final String OBJECT_NAME = "it.auties.optional:type=OptionalCounters";
+    public static final String FILE_PROPERTY = "it.auties.optional.counters";
+    private static final OptionalCounters INSTANCE = new OptionalCounters();
+    private final ConcurrentMap<String, Counter> counters;
+
+    static {
+        INSTANCE.register();
+        var file = System.getProperty(FILE_PROPERTY);
+        if(file != null){
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> INSTANCE.write(Path.of(file)), "optional-counters-dump"));
+        }
+    }
+
+    private OptionalCounters() {
+        this.counters = new ConcurrentHashMap<>();
+    }
+
+    public static OptionalCounters instance() {
+        return INSTANCE;
+    }
+
+    public static void present(String site, boolean present){
+        var counter = INSTANCE.counter(site);
+        (present ? counter.taken() : counter.empty()).increment();
+    }
+
+    public static void thrown(String site, boolean present){
+        var counter = INSTANCE.counter(site);
+        (present ? counter.taken() : counter.thrown()).increment();
+    }
+
+    private Counter counter(String site) {
+        var counter = counters.get(site);
+        return counter != null ? counter : counters.computeIfAbsent(site, ignored -> new Counter());
+    }
+
+    @Override
+    public Map<String, Long> getCounters() {
+        var result = new TreeMap<String, Long>();
+        counters.forEach((site, counter) -> {
+            result.put(site + ":taken", counter.taken().sum());
+            result.put(site + ":empty", counter.empty().sum());
+            result.put(site + ":thrown", counter.thrown().sum());
+        });
+        return result;
+    }
+
+    @Override
+    public String dump() {
+        var builder = new StringBuilder("site\ttaken\tempty\tthrown\n");
+        new TreeMap<>(counters).forEach((site, counter) -> builder.append(site)
+                .append('\t').append(counter.taken().sum())
+                .append('\t').append(counter.empty().sum())
+                .append('\t').append(counter.thrown().sum())
+                .append('\n'));
+        return builder.toString();
+    }
+
+    @Override
+    public void reset() {
+        counters.values().forEach(Counter::reset);
+    }
+
+    @SneakyThrows
+    public void write(Path file){
+        Files.writeString(file, dump());
+    }
+
+    private void register() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName(OBJECT_NAME));
+        }catch (JMException ignored){
+            // Another copy of the runtime, loaded by a different class loader, already owns the name
+        }
+    }
+
+    private record Counter(LongAdder taken, LongAdder empty, LongAdder thrown) {
+        private Counter() {
+            this(new LongAdder(), new LongAdder(), new LongAdder());
+        }
+
+        private void reset(){
+            taken.reset();
+            empty.reset();
+            thrown.reset();
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package it.auties.optional.runtime;
+
+import java.util.Map;
+
+public interface OptionalCountersMXBean {
+    Map<String, Long> getCounters();
+    String dump();
+    void reset();
+}
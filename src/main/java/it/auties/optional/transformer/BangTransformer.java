@@ -15,10 +15,12 @@ public class BangTransformer extends FunctionalTransformer{
     @Override
     public JCTree.JCStatement body() {
         var value = createIdentifierForParameter(0);
-        var checkCondition = maker.createNullCheck(value, false);
+        var presentFirst = isPresentLikely();
+        var checkCondition = maker.createPresenceCheck(value, presentFirst);
         var returner = returnParameter(value);
+        var thrower = throwException();
         return maker.trees()
-                .If(checkCondition, throwException(), returner)
+                .If(checkCondition, presentFirst ? returner : thrower, presentFirst ? thrower : returner)
                 .setType(returner.type);
     }
 
@@ -39,6 +41,11 @@ public class BangTransformer extends FunctionalTransformer{
                 .setType(value.type);
     }
 
+    @Override
+    protected CounterKind counterKind() {
+        return CounterKind.THROWING;
+    }
+
     @Override
     public Set<String> supportedInstructions() {
         return Set.of("get", "getAsInt", "getAsLong", "getAsDouble", "orElseThrow");
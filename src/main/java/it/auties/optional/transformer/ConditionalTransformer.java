@@ -12,11 +12,11 @@ public class ConditionalTransformer extends FunctionalTransformer{
 
     @Override
     public JCTree.JCStatement body() {
-        var checkCondition = maker.createNullCheck(createIdentifierForParameter(0), true);
+        var checkCondition = maker.createPresenceCheck(createIdentifierForParameter(0), true);
         var ifPresent = creteInstruction(0);
         var orElse = creteInstruction(1);
         return maker.trees()
-                .If(checkCondition, execute(ifPresent), execute(orElse))
+                .If(checkCondition, execute(ifPresent), orElse == null ? null : execute(orElse))
                 .setType(maker.symtab().voidType);
     }
 
@@ -16,14 +16,17 @@ public class ElvisTransformer extends FunctionalTransformer{
     public JCTree.JCStatement body() {
         var parameter = createIdentifierForParameter(0);
         var elvis = Objects.requireNonNullElse(generatedInvocations.head, createIdentifierForParameter(1));
-        var conditional = maker.trees()
-                .Conditional(maker.createNullCheck(parameter, false), elvis, parameter)
-                .setType(Elements.getReturnType(parameter.type));
+        var conditional = createBranch(parameter, parameter, elvis, Elements.getReturnType(parameter.type));
         return maker.trees()
                 .Return(conditional)
                 .setType(conditional.type);
     }
 
+    @Override
+    protected CounterKind counterKind() {
+        return CounterKind.PRESENCE;
+    }
+
     @Override
     public Set<String> supportedInstructions() {
         return Set.of("orElse", "orElseGet");
@@ -15,14 +15,20 @@ public class FilterTransformer extends FunctionalTransformer{
     public JCTree.JCStatement body() {
         var parameter = createIdentifierForParameter(0);
         var filter = Objects.requireNonNullElseGet(generatedInvocations.head, () -> createIdentifierForParameter(1));
+        var condition = maker.createComparison(JCTree.Tag.AND, maker.createPresenceCheck(parameter, true), filter);
         var conditional = maker.trees()
-                .Conditional(filter, parameter, maker.createNullType())
+                .Conditional(condition, parameter, maker.createNullType())
                 .setType(parameter.type);
         return maker.trees()
                 .Return(conditional)
                 .setType(conditional.type);
     }
 
+    @Override
+    protected CounterKind counterKind() {
+        return CounterKind.PRESENCE;
+    }
+
     @Override
     public Set<String> supportedInstructions() {
         return Set.of("filter");
@@ -1,13 +1,19 @@
 package it.auties.optional.transformer;
 
+import com.sun.tools.javac.code.Symbol;
 import com.sun.tools.javac.code.Type;
 import com.sun.tools.javac.tree.JCTree;
 import com.sun.tools.javac.tree.TreeInfo;
+import com.sun.tools.javac.tree.TreeScanner;
 import com.sun.tools.javac.util.List;
+import com.sun.tools.javac.util.Name;
 import it.auties.optional.tree.Elements;
 import it.auties.optional.tree.FunctionalExpressionDesugarer;
 import it.auties.optional.tree.Maker;
 
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
 import static com.sun.tools.javac.util.List.nil;
@@ -17,12 +23,15 @@ public abstract class FunctionalTransformer extends OptionalTransformer{
     protected JCTree.JCMethodDecl generatedMethod;
     protected List<JCTree.JCMethodDecl> generatedLambdas;
     protected List<JCTree.JCMethodInvocation> generatedInvocations;
+    private Map<Name, Symbol> capturedSymbols;
     public FunctionalTransformer(Maker callMaker) {
         super(callMaker);
     }
 
     @Override
     public JCTree.JCExpression transform() {
+        maker.trees().at(invocationPosition);
+        this.capturedSymbols = findCapturedSymbols();
         this.generatedLambdas = generateFunctionalExpressions();
         this.generatedMethod = generateMethod();
         this.generatedInvocations = generateFunctionalCalls();
@@ -35,6 +44,7 @@ public abstract class FunctionalTransformer extends OptionalTransformer{
         return maker.newMethod()
                 .enclosingClass(enclosingClass)
                 .modelMethod(enclosingMethod)
+                .position(invocationPosition)
                 .name(instruction)
                 .parameters(createRootParameters())
                 .toTree();
@@ -49,12 +59,39 @@ public abstract class FunctionalTransformer extends OptionalTransformer{
 
     private JCTree.JCBlock createBody() {
         var body = body();
+        var statements = isInstrumented() ? of(createCounter(), body) : of(body);
         return (JCTree.JCBlock) maker.trees()
                 .at(generatedMethod.pos())
-                .Block(0L, of(body))
+                .Block(0L, statements)
                 .setType(body.type);
     }
 
+    private boolean isInstrumented() {
+        return maker.instrument() && counterKind() != CounterKind.NONE;
+    }
+
+    private JCTree.JCStatement createCounter() {
+        return maker.createCounter(generatedMethod.sym, createIdentifierForParameter(0), counterKind() == CounterKind.THROWING);
+    }
+
+    protected JCTree.JCExpression createBranch(JCTree.JCIdent value, JCTree.JCExpression whenPresent, JCTree.JCExpression whenEmpty, Type type){
+        var presentFirst = isPresentLikely();
+        var condition = maker.createPresenceCheck(value, presentFirst);
+        return maker.createConditional(condition, presentFirst ? whenPresent : whenEmpty, presentFirst ? whenEmpty : whenPresent, type);
+    }
+
+    protected boolean isPresentLikely(){
+        var site = "%s.%s".formatted(generatedMethod.sym.owner.flatName(), generatedMethod.name);
+        return maker.manager()
+                .profile()
+                .isPresentLikely(site)
+                .orElse(false);
+    }
+
+    protected CounterKind counterKind(){
+        return CounterKind.NONE;
+    }
+
     private List<JCTree.JCExpression> createRootArguments() {
         var explicitArguments = invocationArguments.stream()
                 .filter(argument -> !(TreeInfo.skipParens(argument) instanceof JCTree.JCFunctionalExpression))
@@ -65,7 +102,7 @@ public abstract class FunctionalTransformer extends OptionalTransformer{
                 .stream()
                 .skip(1)
                 .limit(generatedMethod.getParameters().size() - 1 - explicitArguments.size())
-                .map(parameter -> maker.identifier(parameter.sym))
+                .map(parameter -> maker.identifier(capturedSymbols.getOrDefault(parameter.name, parameter.sym)))
                 .collect(List.<JCTree.JCExpression>collector());
 
         return isMemberReferenceScoped() ? explicitArguments.appendList(deducedArguments)
@@ -82,15 +119,37 @@ public abstract class FunctionalTransformer extends OptionalTransformer{
         return maker.trees().App(maker.trees().Select(parameter, method), isMemberReferenceScoped() ? nil() : of(invocationCaller));
     }
 
+    private Map<Name, Symbol> findCapturedSymbols() {
+        var captured = new HashMap<Name, Symbol>();
+        var scanner = new TreeScanner(){
+            @Override
+            public void visitIdent(JCTree.JCIdent tree) {
+                if(tree.sym instanceof Symbol.VarSymbol && enclosingMethod != null && tree.sym.owner == enclosingMethod.sym){
+                    captured.putIfAbsent(tree.name, tree.sym);
+                }
+            }
+        };
+        invocationArguments.forEach(scanner::scan);
+        return captured;
+    }
+
     private List<JCTree.JCMethodInvocation> generateFunctionalCalls() {
-        return generatedLambdas.map(lambda -> {
+        var invocations = List.<JCTree.JCMethodInvocation>nil();
+        var captured = generatedMethod.getParameters().tail;
+        for(var lambda : generatedLambdas){
+            var descriptorSize = findDescriptorSize(lambda);
+            var capturedSize = lambda.getParameters().size() - descriptorSize;
             var arguments = generatedMethod.getParameters()
                     .stream()
-                    .limit(lambda.getParameters().size())
+                    .limit(descriptorSize)
                     .map(parameter -> maker.identifier(parameter.sym))
-                    .collect(List.<JCTree.JCExpression>collector());
-            return maker.createCallOnIdentifier(lambda, arguments);
-        });
+                    .collect(List.<JCTree.JCExpression>collector())
+                    .appendList(captured.stream().limit(capturedSize).map(parameter -> maker.identifier(parameter.sym)).collect(List.collector()));
+            captured = captured.stream().skip(capturedSize).collect(List.collector());
+            invocations = invocations.append(maker.createCallOnIdentifier(lambda, arguments));
+        }
+
+        return invocations;
     }
 
     private List<JCTree.JCMethodDecl> generateFunctionalExpressions() {
@@ -107,24 +166,40 @@ public abstract class FunctionalTransformer extends OptionalTransformer{
     }
 
     private List<JCTree.JCVariableDecl> createRootParametersFromInvocation() {
-        return invocationArguments.stream()
-                .map(expression -> maker.createInferredParameter(expression.type))
+        return IntStream.range(0, invocationArguments.size())
+                .mapToObj(index -> maker.createInferredParameter(argumentType(index)))
                 .collect(List.collector())
-                .prepend(maker.createInferredParameter(maker.boxed(invocationCallerType)));
+                .prepend(maker.createInferredParameter(invocationValueType()));
+    }
+
+    private Type argumentType(int index) {
+        var originalType = invocationArgumentTypes == null || index >= invocationArgumentTypes.size() ? null : invocationArgumentTypes.get(index);
+        if(originalType != null && originalType.tsym != null && maker.hasOptionalName(originalType.tsym.getQualifiedName())){
+            return originalType;
+        }
+
+        return invocationArguments.get(index).type;
     }
 
     private List<JCTree.JCVariableDecl> createRootParametersFromLambdas() {
         return generatedLambdas.stream()
                 .flatMap(this::removeErasedTypeArguments)
                 .collect(List.collector())
-                .prepend(maker.createInferredParameter(maker.boxed(invocationCallerType)));
+                .prepend(maker.createInferredParameter(invocationValueType()));
     }
 
     private Stream<JCTree.JCVariableDecl> removeErasedTypeArguments(JCTree.JCMethodDecl lambda) {
-        var erased = ((FunctionalExpressionDesugarer.FunctionalExpressionType) lambda.type).erased();
         return lambda.getParameters()
                 .stream()
-                .skip(erased.getTypeArguments().size());
+                .skip(findDescriptorSize(lambda));
+    }
+
+    private int findDescriptorSize(JCTree.JCMethodDecl lambda) {
+        var erased = ((FunctionalExpressionDesugarer.FunctionalExpressionType) lambda.type).erased();
+        return maker.types()
+                .findDescriptorType(erased)
+                .getParameterTypes()
+                .size();
     }
 
     protected JCTree.JCIdent createIdentifierForParameter(int index){
@@ -137,4 +212,10 @@ public abstract class FunctionalTransformer extends OptionalTransformer{
     }
 
     protected abstract JCTree.JCStatement body();
+
+    public enum CounterKind {
+        NONE,
+        PRESENCE,
+        THROWING
+    }
 }
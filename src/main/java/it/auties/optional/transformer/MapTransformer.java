@@ -14,16 +14,18 @@ public class MapTransformer extends FunctionalTransformer {
 
     @Override
     public JCTree.JCStatement body() {
-        var checkCondition = maker.createNullCheck(createIdentifierForParameter(0), false);
         var mapper = Objects.requireNonNullElseGet(generatedInvocations.head, () -> createIdentifierForParameter(1));
-        var conditional = maker.trees()
-                .Conditional(checkCondition, maker.createNullType(), mapper)
-                .setType(Elements.getReturnType(mapper.type));
+        var conditional = createBranch(createIdentifierForParameter(0), mapper, maker.createNullType(), Elements.getReturnType(mapper.type));
         return maker.trees()
                 .Return(conditional)
                 .setType(conditional.type);
     }
 
+    @Override
+    protected CounterKind counterKind() {
+        return CounterKind.PRESENCE;
+    }
+
     @Override
     public Set<String> supportedInstructions() {
         return Set.of("map", "flatMap");
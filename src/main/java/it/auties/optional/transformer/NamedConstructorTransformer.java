@@ -13,7 +13,7 @@ public class NamedConstructorTransformer extends OptionalTransformer{
     @Override
     public JCTree.JCExpression transform() {
         return switch (instruction){
-            case "empty" -> maker.createNullType();
+            case "empty" -> maker.createEmptyValue(invocationValueType());
             case "of" -> {
                 var parameter = invocationArguments.head;
                 if (parameter.type.isPrimitive()){
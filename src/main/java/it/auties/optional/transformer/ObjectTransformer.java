@@ -0,0 +1,81 @@
+package it.auties.optional.transformer;
+
+import com.sun.tools.javac.code.Symbol;
+import com.sun.tools.javac.code.Type;
+import com.sun.tools.javac.code.TypeTag;
+import com.sun.tools.javac.tree.JCTree;
+import com.sun.tools.javac.util.List;
+import it.auties.optional.tree.Maker;
+
+import java.util.Set;
+
+import static com.sun.tools.javac.util.List.of;
+
+public class ObjectTransformer extends FunctionalTransformer{
+    public ObjectTransformer(Maker callMaker) {
+        super(callMaker);
+    }
+
+    @Override
+    public JCTree.JCStatement body() {
+        var value = createIdentifierForParameter(0);
+        var result = switch (instruction){
+            case "equals" -> createEquals(value, createIdentifierForParameter(1));
+            case "hashCode" -> createHashCode(value);
+            case "toString" -> createToString(value);
+            default -> throw new IllegalStateException("ObjectTransformer: %s is not a supported instruction".formatted(instruction));
+        };
+        return maker.trees()
+                .Return(result)
+                .setType(result.type);
+    }
+
+    private JCTree.JCExpression createEquals(JCTree.JCIdent value, JCTree.JCIdent other) {
+        if(!value.type.isPrimitive()){
+            return maker.createStaticCall(maker.symtab().objectsType, "equals", of(value, other));
+        }
+
+        if(value.type.hasTag(TypeTag.DOUBLE)){
+            var comparison = maker.createStaticCall(boxedType(value), "compare", of(value, other));
+            return maker.createComparison(JCTree.Tag.EQ, comparison, maker.trees().Literal(0));
+        }
+
+        return maker.createComparison(JCTree.Tag.EQ, value, other);
+    }
+
+    private JCTree.JCExpression createHashCode(JCTree.JCIdent value) {
+        if(!value.type.isPrimitive()){
+            return maker.createStaticCall(maker.symtab().objectsType, "hashCode", of(value));
+        }
+
+        var hashCode = maker.createStaticCall(boxedType(value), "hashCode", of(value));
+        return createBranch(value, hashCode, maker.trees().Literal(0), maker.symtab().intType);
+    }
+
+    private JCTree.JCExpression createToString(JCTree.JCIdent value) {
+        var name = invocationOwner.getSimpleName();
+        var present = maker.createConcatenation(maker.createConcatenation(maker.trees().Literal(name + "["), value), maker.trees().Literal("]"));
+        var empty = maker.trees().Literal(name + ".empty");
+        return createBranch(value, present, empty, maker.symtab().stringType);
+    }
+
+    private Type boxedType(JCTree.JCIdent value) {
+        return maker.types().boxedClass(value.type).type;
+    }
+
+    @Override
+    public boolean supports(Symbol selected, List<Type> argumentTypes) {
+        if(!selected.name.contentEquals("equals")){
+            return true;
+        }
+
+        return argumentTypes != null
+                && argumentTypes.size() == 1
+                && argumentTypes.head.tsym == selected.owner;
+    }
+
+    @Override
+    public Set<String> supportedInstructions() {
+        return Set.of("equals", "hashCode", "toString");
+    }
+}
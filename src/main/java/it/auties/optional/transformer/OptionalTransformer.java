@@ -20,13 +20,33 @@ public abstract class OptionalTransformer {
     protected JCTree.JCExpression invocationCaller;
     protected Type invocationCallerType;
     protected List<JCTree.JCExpression> invocationArguments;
+    protected List<Type> invocationArgumentTypes;
     protected JCTree.JCMethodDecl enclosingMethod;
     protected Symbol.ClassSymbol enclosingClass;
+    protected Symbol.ClassSymbol invocationOwner;
+    protected int invocationPosition;
 
     public boolean isMemberReferenceScoped(){
         return invocationCaller == null;
     }
 
+    protected Type invocationValueType(){
+        return maker.isPrimitiveOptional(invocationOwner.type) ? maker.unboxWrapper(invocationOwner.type)
+                : maker.boxed(invocationCallerType);
+    }
+
+    public boolean supports(Symbol selected){
+        return true;
+    }
+
+    public boolean supports(Symbol selected, List<Type> argumentTypes){
+        return supports(selected);
+    }
+
+    public int priority(){
+        return 0;
+    }
+
     public abstract JCTree.JCExpression transform();
     public abstract Set<String> supportedInstructions();
 }
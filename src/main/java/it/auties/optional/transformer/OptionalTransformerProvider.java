@@ -0,0 +1,9 @@
+package it.auties.optional.transformer;
+
+import it.auties.optional.tree.Maker;
+
+import java.util.List;
+
+public interface OptionalTransformerProvider {
+    List<OptionalTransformer> transformers(Maker maker);
+}
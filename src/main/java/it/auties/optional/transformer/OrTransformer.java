@@ -15,16 +15,18 @@ public class OrTransformer extends FunctionalTransformer {
     @Override
     public JCTree.JCStatement body() {
         var parameter = createIdentifierForParameter(0);
-        var checkCondition = maker.createNullCheck(parameter, false);
         var otherwise = Objects.requireNonNullElseGet(generatedInvocations.head, () -> createIdentifierForParameter(1));
-        var conditional = maker.trees()
-                .Conditional(checkCondition, otherwise, parameter)
-                .setType(Elements.getReturnType(otherwise.type));
+        var conditional = createBranch(parameter, parameter, otherwise, Elements.getReturnType(otherwise.type));
         return maker.trees()
                 .Return(conditional)
                 .setType(conditional.type);
     }
 
+    @Override
+    protected CounterKind counterKind() {
+        return CounterKind.PRESENCE;
+    }
+
     @Override
     public Set<String> supportedInstructions() {
         return Set.of("or");
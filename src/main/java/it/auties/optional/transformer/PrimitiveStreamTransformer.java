@@ -0,0 +1,52 @@
+package it.auties.optional.transformer;
+
+import com.sun.tools.javac.code.Symbol;
+import com.sun.tools.javac.code.Type;
+import com.sun.tools.javac.tree.JCTree;
+import it.auties.optional.tree.Maker;
+
+import java.util.Set;
+import java.util.stream.DoubleStream;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+
+import static com.sun.tools.javac.util.List.nil;
+import static com.sun.tools.javac.util.List.of;
+
+public class PrimitiveStreamTransformer extends FunctionalTransformer{
+    public PrimitiveStreamTransformer(Maker callMaker) {
+        super(callMaker);
+    }
+
+    @Override
+    public JCTree.JCStatement body() {
+        var value = createIdentifierForParameter(0);
+        var streamType = findStreamType(value.type);
+        var stream = maker.createStaticCall(streamType, "of", of(value));
+        var empty = maker.createStaticCall(streamType, "empty", nil());
+        var conditional = createBranch(value, stream, empty, streamType);
+        return maker.trees()
+                .Return(conditional)
+                .setType(conditional.type);
+    }
+
+    private Type findStreamType(Type valueType) {
+        var streamClass = switch (valueType.getTag()){
+            case INT -> IntStream.class;
+            case LONG -> LongStream.class;
+            case DOUBLE -> DoubleStream.class;
+            default -> throw new IllegalArgumentException("No primitive stream is defined for %s".formatted(valueType));
+        };
+        return maker.symbols().baseClass(streamClass).asType();
+    }
+
+    @Override
+    public boolean supports(Symbol selected) {
+        return maker.isPrimitiveOptional(selected.owner.type);
+    }
+
+    @Override
+    public Set<String> supportedInstructions() {
+        return Set.of("stream");
+    }
+}
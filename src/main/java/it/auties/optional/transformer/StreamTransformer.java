@@ -12,6 +12,7 @@ public class StreamTransformer extends OptionalTransformer{
 
     @Override
     public JCTree.JCExpression transform() {
+        maker.trees().at(invocationPosition);
         return maker.makeStream(invocationCaller);
     }
 
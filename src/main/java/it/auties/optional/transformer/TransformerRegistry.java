@@ -0,0 +1,66 @@
+package it.auties.optional.transformer;
+
+import com.sun.tools.javac.code.Symbol;
+import com.sun.tools.javac.code.Type;
+import com.sun.tools.javac.util.List;
+import com.sun.tools.javac.util.Name;
+import it.auties.optional.tree.Maker;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.ServiceLoader;
+
+public class TransformerRegistry {
+    private final Map<Name, List<OptionalTransformer>> transformers;
+
+    public TransformerRegistry() {
+        this.transformers = new HashMap<>();
+    }
+
+    public TransformerRegistry register(OptionalTransformer transformer){
+        var names = transformer.maker().names();
+        transformer.supportedInstructions()
+                .stream()
+                .map(names::fromString)
+                .forEach(instruction -> transformers.merge(instruction, List.of(transformer), (known, added) -> insert(known, transformer)));
+        return this;
+    }
+
+    private List<OptionalTransformer> insert(List<OptionalTransformer> known, OptionalTransformer transformer){
+        var preceding = known.stream()
+                .takeWhile(entry -> entry.priority() >= transformer.priority())
+                .collect(List.<OptionalTransformer>collector());
+        var following = known.stream()
+                .skip(preceding.size())
+                .collect(List.<OptionalTransformer>collector());
+        return preceding.append(transformer).appendList(following);
+    }
+
+    public TransformerRegistry registerAll(Collection<? extends OptionalTransformer> transformers){
+        transformers.forEach(this::register);
+        return this;
+    }
+
+    public TransformerRegistry load(ClassLoader loader, Maker maker){
+        ServiceLoader.load(OptionalTransformerProvider.class, loader)
+                .forEach(provider -> registerAll(provider.transformers(maker)));
+        return this;
+    }
+
+    public Optional<OptionalTransformer> find(Symbol selected, List<Type> argumentTypes){
+        var candidates = transformers.get(selected.getSimpleName());
+        if(candidates == null){
+            return Optional.empty();
+        }
+
+        for(var transformer : candidates){
+            if(transformer.supports(selected, argumentTypes)){
+                return Optional.of(transformer);
+            }
+        }
+
+        return Optional.empty();
+    }
+}
@@ -15,7 +15,7 @@ public class ValueTransformer extends OptionalTransformer{
     public JCTree.JCExpression transform() {
         var nonNull = Objects.equals(instruction, "isPresent");
         return isMemberReferenceScoped() ? maker.createDummyNullCheck(nonNull)
-                : maker.createNullCheck(invocationCaller, nonNull);
+                : maker.createPresenceCheck(invocationCaller, invocationValueType(), nonNull);
     }
 
     @Override
@@ -0,0 +1,234 @@
+package it.auties.optional.tree;
+
+import com.sun.tools.javac.code.Kinds;
+import com.sun.tools.javac.code.Symbol;
+import com.sun.tools.javac.code.TypeTag;
+import com.sun.tools.javac.tree.JCTree;
+import com.sun.tools.javac.tree.TreeScanner;
+
+public class BytecodeEstimator extends TreeScanner {
+    private static final int LOAD = 1;
+    private static final int FIELD = 3;
+    private static final int CONSTANT = 2;
+    private static final int INVOKE = 3;
+    private static final int INVOKE_DYNAMIC = 5;
+    private static final int BRANCH = 3;
+    private static final int ALLOCATION = 7;
+    private int size;
+    private boolean lambdas;
+
+    public int estimate(JCTree tree){
+        return estimate(tree, false);
+    }
+
+    public int estimateInlined(JCTree tree){
+        return estimate(tree, true);
+    }
+
+    private int estimate(JCTree tree, boolean lambdas){
+        this.size = 0;
+        this.lambdas = lambdas;
+        scan(tree);
+        return size;
+    }
+
+    @Override
+    public void visitMethodDef(JCTree.JCMethodDecl tree) {
+        scan(tree.body);
+    }
+
+    @Override
+    public void visitClassDef(JCTree.JCClassDecl tree) {
+        size += ALLOCATION;
+    }
+
+    @Override
+    public void visitIdent(JCTree.JCIdent tree) {
+        size += isField(tree.sym) ? FIELD : isValue(tree.sym) ? LOAD : 0;
+    }
+
+    @Override
+    public void visitSelect(JCTree.JCFieldAccess tree) {
+        super.visitSelect(tree);
+        size += isField(tree.sym) ? FIELD : 0;
+    }
+
+    @Override
+    public void visitLiteral(JCTree.JCLiteral tree) {
+        size += tree.typetag == TypeTag.LONG || tree.typetag == TypeTag.DOUBLE ? CONSTANT + 1 : CONSTANT;
+    }
+
+    @Override
+    public void visitApply(JCTree.JCMethodInvocation tree) {
+        super.visitApply(tree);
+        size += INVOKE;
+    }
+
+    @Override
+    public void visitNewClass(JCTree.JCNewClass tree) {
+        scan(tree.encl);
+        scan(tree.args);
+        size += ALLOCATION;
+    }
+
+    @Override
+    public void visitNewArray(JCTree.JCNewArray tree) {
+        super.visitNewArray(tree);
+        size += ALLOCATION + (tree.elems == null ? 0 : tree.elems.size() * (CONSTANT + 2));
+    }
+
+    @Override
+    public void visitLambda(JCTree.JCLambda tree) {
+        size += INVOKE_DYNAMIC;
+        if(lambdas){
+            scan(tree.body);
+        }
+    }
+
+    @Override
+    public void visitReference(JCTree.JCMemberReference tree) {
+        scan(tree.expr);
+        size += INVOKE_DYNAMIC;
+    }
+
+    @Override
+    public void visitBinary(JCTree.JCBinary tree) {
+        super.visitBinary(tree);
+        size += isComparison(tree.getTag()) ? BRANCH : 1;
+    }
+
+    @Override
+    public void visitUnary(JCTree.JCUnary tree) {
+        super.visitUnary(tree);
+        size += tree.getTag() == JCTree.Tag.NOT ? 1 : CONSTANT;
+    }
+
+    @Override
+    public void visitAssign(JCTree.JCAssign tree) {
+        super.visitAssign(tree);
+        size += LOAD;
+    }
+
+    @Override
+    public void visitAssignop(JCTree.JCAssignOp tree) {
+        super.visitAssignop(tree);
+        size += LOAD + 1;
+    }
+
+    @Override
+    public void visitTypeCast(JCTree.JCTypeCast tree) {
+        scan(tree.expr);
+        size += tree.type != null && tree.type.isPrimitive() ? 1 : INVOKE;
+    }
+
+    @Override
+    public void visitTypeTest(JCTree.JCInstanceOf tree) {
+        scan(tree.expr);
+        size += INVOKE;
+    }
+
+    @Override
+    public void visitIndexed(JCTree.JCArrayAccess tree) {
+        super.visitIndexed(tree);
+        size += 1;
+    }
+
+    @Override
+    public void visitConditional(JCTree.JCConditional tree) {
+        super.visitConditional(tree);
+        size += 2 * BRANCH;
+    }
+
+    @Override
+    public void visitIf(JCTree.JCIf tree) {
+        super.visitIf(tree);
+        size += tree.elsepart == null ? BRANCH : 2 * BRANCH;
+    }
+
+    @Override
+    public void visitForLoop(JCTree.JCForLoop tree) {
+        super.visitForLoop(tree);
+        size += 2 * BRANCH;
+    }
+
+    @Override
+    public void visitForeachLoop(JCTree.JCEnhancedForLoop tree) {
+        super.visitForeachLoop(tree);
+        size += 2 * BRANCH + 3 * INVOKE;
+    }
+
+    @Override
+    public void visitWhileLoop(JCTree.JCWhileLoop tree) {
+        super.visitWhileLoop(tree);
+        size += 2 * BRANCH;
+    }
+
+    @Override
+    public void visitDoLoop(JCTree.JCDoWhileLoop tree) {
+        super.visitDoLoop(tree);
+        size += BRANCH;
+    }
+
+    @Override
+    public void visitSwitch(JCTree.JCSwitch tree) {
+        super.visitSwitch(tree);
+        size += 2 * BRANCH + tree.cases.size() * 2 * BRANCH;
+    }
+
+    @Override
+    public void visitTry(JCTree.JCTry tree) {
+        super.visitTry(tree);
+        size += BRANCH + tree.catchers.size() * (LOAD + BRANCH);
+    }
+
+    @Override
+    public void visitVarDef(JCTree.JCVariableDecl tree) {
+        scan(tree.init);
+        size += tree.init == null ? 0 : LOAD;
+    }
+
+    @Override
+    public void visitExec(JCTree.JCExpressionStatement tree) {
+        super.visitExec(tree);
+        size += tree.expr.type != null && !tree.expr.type.hasTag(TypeTag.VOID) && !(tree.expr instanceof JCTree.JCAssign) ? 1 : 0;
+    }
+
+    @Override
+    public void visitReturn(JCTree.JCReturn tree) {
+        super.visitReturn(tree);
+        size += 1;
+    }
+
+    @Override
+    public void visitThrow(JCTree.JCThrow tree) {
+        super.visitThrow(tree);
+        size += 1;
+    }
+
+    @Override
+    public void visitBreak(JCTree.JCBreak tree) {
+        size += BRANCH;
+    }
+
+    @Override
+    public void visitContinue(JCTree.JCContinue tree) {
+        size += BRANCH;
+    }
+
+    private boolean isComparison(JCTree.Tag tag) {
+        return switch (tag){
+            case EQ, NE, LT, GT, LE, GE, AND, OR -> true;
+            default -> false;
+        };
+    }
+
+    private boolean isField(Symbol symbol) {
+        return symbol instanceof Symbol.VarSymbol
+                && symbol.owner != null
+                && symbol.owner.kind == Kinds.Kind.TYP;
+    }
+
+    private boolean isValue(Symbol symbol) {
+        return symbol instanceof Symbol.VarSymbol;
+    }
+}
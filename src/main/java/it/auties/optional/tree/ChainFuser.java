@@ -0,0 +1,422 @@
+package it.auties.optional.tree;
+
+import com.sun.tools.javac.code.Flags;
+import com.sun.tools.javac.code.Symbol;
+import com.sun.tools.javac.code.Type;
+import com.sun.tools.javac.tree.JCTree;
+import com.sun.tools.javac.tree.TreeInfo;
+import com.sun.tools.javac.tree.TreeTranslator;
+import com.sun.tools.javac.util.List;
+import com.sun.tools.javac.util.ListBuffer;
+import lombok.RequiredArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.UnaryOperator;
+
+import static com.sun.tools.javac.tree.TreeInfo.symbolFor;
+import static com.sun.tools.javac.util.List.of;
+
+@RequiredArgsConstructor
+public class ChainFuser {
+    private static final Set<String> SOURCES = Set.of("of", "ofNullable", "empty");
+    private static final Set<String> LINKS = Set.of("map", "flatMap", "filter", "or");
+    private static final Set<String> TERMINALS = Set.of("orElse", "orElseGet", "orElseThrow", "get", "getAsInt", "getAsLong", "getAsDouble", "isPresent", "isEmpty");
+
+    private final Maker maker;
+    private final UnaryOperator<JCTree.JCExpression> translator;
+    private JCTree.JCMethodDecl enclosingMethod;
+
+    public Optional<JCTree.JCExpression> fuse(JCTree.JCMethodInvocation invocation, JCTree.JCMethodDecl enclosingMethod) {
+        if(enclosingMethod == null){
+            return Optional.empty();
+        }
+
+        var chain = new ArrayList<JCTree.JCMethodInvocation>();
+        JCTree.JCExpression root = invocation;
+        while (TreeInfo.skipParens(root) instanceof JCTree.JCMethodInvocation link
+                && isOwnedByOptional(link)
+                && !SOURCES.contains(instructionOf(link))) {
+            if(!isFusable(link, chain.isEmpty())){
+                return Optional.empty();
+            }
+
+            chain.add(0, link);
+            root = Elements.getCallerExpression(link);
+        }
+
+        if(chain.isEmpty()){
+            return Optional.empty();
+        }
+
+        this.enclosingMethod = enclosingMethod;
+        maker.trees().at(invocation.pos);
+        var receiverTypes = chain.stream()
+                .map(link -> elementType(Elements.getCallerExpression(link).type))
+                .toList();
+        if(isScalarReplaceable(chain, receiverTypes)){
+            return Optional.of(lowerScalarChain(root, chain, receiverTypes.get(0)));
+        }
+
+        var value = createSource(root);
+        for(var index = 0; index < chain.size(); index++){
+            value = fuseLink(chain.get(index), value, receiverTypes.get(index));
+        }
+
+        return Optional.of(value);
+    }
+
+    private JCTree.JCExpression createSource(JCTree.JCExpression root) {
+        var skipped = TreeInfo.skipParens(root);
+        if(!(skipped instanceof JCTree.JCMethodInvocation invocation) || !isOwnedByOptional(invocation)){
+            return translator.apply(root);
+        }
+
+        return switch (instructionOf(invocation)){
+            case "empty" -> maker.createEmptyValue(elementType(root.type));
+            case "of" -> {
+                var parameter = translator.apply(invocation.getArguments().head);
+                yield parameter.type.isPrimitive() ? parameter : maker.createNullAssert(parameter);
+            }
+            case "ofNullable" -> translator.apply(invocation.getArguments().head);
+            default -> translator.apply(root);
+        };
+    }
+
+    private JCTree.JCExpression fuseLink(JCTree.JCMethodInvocation link, JCTree.JCExpression value, Type valueType) {
+        return switch (instructionOf(link)){
+            case "isPresent" -> maker.createPresenceCheck(value, valueType, true);
+            case "isEmpty" -> maker.createPresenceCheck(value, valueType, false);
+            default -> fuseBoundLink(link, declare(value, valueType));
+        };
+    }
+
+    private JCTree.JCExpression fuseBoundLink(JCTree.JCMethodInvocation link, JCTree.JCVariableDecl variable) {
+        var argument = link.getArguments().isEmpty() ? null : link.getArguments().head;
+        var resultType = Objects.requireNonNullElseGet(elementType(link.type), () -> maker.eraseAndBox(link.type, false));
+        return switch (instructionOf(link)){
+            case "map", "flatMap" -> bind(variable, maker.createConditional(isNull(variable), maker.createNullType(), inline(argument, variable.sym), resultType));
+            case "filter" -> bind(variable, maker.createConditional(isNull(variable), maker.createNullType(), maker.createConditional(inline(argument, variable.sym), maker.identifier(variable.sym), maker.createNullType(), resultType), resultType));
+            case "or", "orElseGet" -> bind(variable, maker.createConditional(isNull(variable), inline(argument, null), maker.identifier(variable.sym), resultType));
+            case "orElse" -> fuseOrElse(variable, argument, resultType);
+            case "get", "getAsInt", "getAsLong", "getAsDouble", "orElseThrow" -> fuseThrow(variable, argument);
+            default -> throw new IllegalStateException("ChainFuser: %s is not a supported instruction".formatted(instructionOf(link)));
+        };
+    }
+
+    private JCTree.JCVariableDecl declare(JCTree.JCExpression value, Type valueType) {
+        var type = Objects.requireNonNullElse(valueType, maker.symtab().objectType);
+        return maker.createLocalVariable(maker.uniqueName("fused"), type, value, enclosingMethod.sym);
+    }
+
+    private JCTree.JCExpression fuseOrElse(JCTree.JCVariableDecl variable, JCTree.JCExpression argument, Type resultType) {
+        var fallback = translator.apply(argument);
+        if(isSideEffectFree(fallback)){
+            return bind(variable, maker.createConditional(isNull(variable), fallback, maker.identifier(variable.sym), resultType));
+        }
+
+        var fallbackVariable = maker.createLocalVariable(maker.uniqueName("fused"), fallback.type, fallback, enclosingMethod.sym);
+        var conditional = maker.createConditional(isNull(variable), maker.identifier(fallbackVariable.sym), maker.identifier(variable.sym), resultType);
+        return maker.createLet(of(variable, fallbackVariable), conditional);
+    }
+
+    private JCTree.JCExpression fuseThrow(JCTree.JCVariableDecl variable, JCTree.JCExpression supplier) {
+        var thrower = supplier == null ? maker.createThrowNoSuchElementException()
+                : maker.trees().Throw(inline(supplier, null));
+        var check = maker.trees().If(isNull(variable), thrower, null);
+        return maker.createLet(of(variable, check), maker.identifier(variable.sym));
+    }
+
+    private JCTree.JCExpression bind(JCTree.JCVariableDecl variable, JCTree.JCExpression expression) {
+        return maker.createLet(of(variable), expression);
+    }
+
+    private JCTree.JCExpression isNull(JCTree.JCVariableDecl variable) {
+        return maker.createPresenceCheck(maker.identifier(variable.sym), false);
+    }
+
+    private boolean isScalarReplaceable(java.util.List<JCTree.JCMethodInvocation> chain, java.util.List<Type> receiverTypes) {
+        return receiverTypes.stream().allMatch(this::isBox)
+                && chain.stream().allMatch(this::isScalarLink);
+    }
+
+    private boolean isScalarLink(JCTree.JCMethodInvocation link) {
+        var argument = link.getArguments().isEmpty() ? null : TreeInfo.skipParens(link.getArguments().head);
+        return switch (instructionOf(link)){
+            case "map" -> isBox(elementType(link.type)) && !escapes(argument);
+            case "filter" -> !escapes(argument);
+            case "orElse", "orElseGet", "orElseThrow", "get", "isPresent", "isEmpty" -> true;
+            default -> false;
+        };
+    }
+
+    private boolean escapes(JCTree.JCExpression argument) {
+        if(argument instanceof JCTree.JCLambda lambda){
+            return new EscapeScanner(lambda.params.map(parameter -> parameter.sym))
+                    .escapes(findLambdaExpression(lambda));
+        }
+
+        return !(argument instanceof JCTree.JCMemberReference reference)
+                || reference.kind != JCTree.JCMemberReference.ReferenceKind.STATIC
+                || !reference.sym.type.getParameterTypes().head.isPrimitive();
+    }
+
+    private JCTree.JCExpression lowerScalarChain(JCTree.JCExpression root, java.util.List<JCTree.JCMethodInvocation> chain, Type rootType) {
+        var statements = new ListBuffer<JCTree.JCStatement>();
+        var value = lowerScalarSource(root, rootType, statements);
+        for(var link : chain){
+            var argument = link.getArguments().isEmpty() ? null : link.getArguments().head;
+            switch (instructionOf(link)){
+                case "map" -> value = lowerScalarMap(value, argument, elementType(link.type), statements);
+                case "filter" -> value = lowerScalarFilter(value, argument, statements);
+                default -> {
+                    return completeScalarChain(statements, lowerScalarTerminal(link, value, statements));
+                }
+            }
+        }
+
+        return completeScalarChain(statements, guard(value, valueOf(value), maker.createNullType(), maker.boxed(value.type())));
+    }
+
+    private ScalarValue lowerScalarSource(JCTree.JCExpression root, Type boxType, ListBuffer<JCTree.JCStatement> statements) {
+        var primitiveType = maker.types().unboxedType(boxType);
+        if(TreeInfo.skipParens(root) instanceof JCTree.JCMethodInvocation invocation && isOwnedByOptional(invocation)){
+            switch (instructionOf(invocation)){
+                case "empty" -> {
+                    return new ScalarValue(null, null, false, primitiveType);
+                }
+                case "of" -> {
+                    var value = declare(statements, primitiveType, translator.apply(invocation.getArguments().head));
+                    return new ScalarValue(value, null, true, primitiveType);
+                }
+                case "ofNullable" -> {
+                    return lowerNullable(translator.apply(invocation.getArguments().head), boxType, statements);
+                }
+            }
+        }
+
+        return lowerNullable(translator.apply(root), boxType, statements);
+    }
+
+    private ScalarValue lowerNullable(JCTree.JCExpression nullable, Type boxType, ListBuffer<JCTree.JCStatement> statements) {
+        var primitiveType = maker.types().unboxedType(boxType);
+        var boxed = declare(statements, boxType, nullable);
+        var presence = declare(statements, maker.symtab().booleanType, maker.createNullCheck(maker.identifier(boxed), true));
+        var unboxed = maker.createConditional(maker.identifier(presence), maker.identifier(boxed), maker.createDefaultValue(primitiveType), primitiveType);
+        var value = declare(statements, primitiveType, unboxed);
+        return new ScalarValue(value, presence, false, primitiveType);
+    }
+
+    private ScalarValue lowerScalarMap(ScalarValue input, JCTree.JCExpression mapper, Type resultType, ListBuffer<JCTree.JCStatement> statements) {
+        var primitiveType = maker.types().unboxedType(resultType);
+        if(isAlwaysEmpty(input)){
+            return new ScalarValue(null, null, false, primitiveType);
+        }
+
+        var mapped = inline(mapper, input.value());
+        if(!mapped.type.isPrimitive()){
+            return lowerNullable(guard(input, mapped, maker.createNullType(), resultType), resultType, statements);
+        }
+
+        var value = declare(statements, primitiveType, guard(input, mapped, maker.createDefaultValue(primitiveType), primitiveType));
+        return new ScalarValue(value, input.presence(), input.present(), primitiveType);
+    }
+
+    private ScalarValue lowerScalarFilter(ScalarValue input, JCTree.JCExpression predicate, ListBuffer<JCTree.JCStatement> statements) {
+        if(isAlwaysEmpty(input)){
+            return input;
+        }
+
+        var test = inline(predicate, input.value());
+        var presence = declare(statements, maker.symtab().booleanType, guard(input, test, maker.trees().Literal(false), maker.symtab().booleanType));
+        return new ScalarValue(input.value(), presence, false, input.type());
+    }
+
+    private JCTree.JCExpression lowerScalarTerminal(JCTree.JCMethodInvocation link, ScalarValue input, ListBuffer<JCTree.JCStatement> statements) {
+        var argument = link.getArguments().isEmpty() ? null : link.getArguments().head;
+        return switch (instructionOf(link)){
+            case "isPresent" -> presenceOf(input);
+            case "isEmpty" -> maker.createComparison(JCTree.Tag.EQ, presenceOf(input), maker.trees().Literal(false));
+            case "get", "orElseThrow" -> {
+                if(!isAlwaysPresent(input)){
+                    var thrower = argument == null ? maker.createThrowNoSuchElementException()
+                            : maker.trees().Throw(inline(argument, null));
+                    var check = maker.createComparison(JCTree.Tag.EQ, presenceOf(input), maker.trees().Literal(false));
+                    statements.add(maker.trees().If(check, thrower, null));
+                }
+
+                yield valueOf(input);
+            }
+            case "orElse" -> {
+                var fallback = translator.apply(argument);
+                yield lowerScalarFallback(input, isSideEffectFree(fallback) ? fallback : maker.identifier(declare(statements, fallback.type, fallback)));
+            }
+            case "orElseGet" -> lowerScalarFallback(input, inline(argument, null));
+            default -> throw new IllegalStateException("ChainFuser: %s is not a supported scalar instruction".formatted(instructionOf(link)));
+        };
+    }
+
+    private JCTree.JCExpression lowerScalarFallback(ScalarValue input, JCTree.JCExpression fallback) {
+        var type = fallback.type.isPrimitive() ? input.type() : maker.boxed(input.type());
+        return guard(input, valueOf(input), fallback, type);
+    }
+
+    private JCTree.JCExpression completeScalarChain(ListBuffer<JCTree.JCStatement> statements, JCTree.JCExpression result) {
+        return statements.isEmpty() ? result : maker.createLet(statements.toList(), result);
+    }
+
+    private JCTree.JCExpression guard(ScalarValue input, JCTree.JCExpression whenPresent, JCTree.JCExpression whenEmpty, Type type) {
+        if(isAlwaysPresent(input)){
+            return whenPresent;
+        }
+
+        if(isAlwaysEmpty(input)){
+            return whenEmpty;
+        }
+
+        return maker.createConditional(presenceOf(input), whenPresent, whenEmpty, type);
+    }
+
+    private Symbol.VarSymbol declare(ListBuffer<JCTree.JCStatement> statements, Type type, JCTree.JCExpression initializer) {
+        var variable = maker.createLocalVariable(maker.uniqueName("fused"), type, initializer, enclosingMethod.sym);
+        statements.add(variable);
+        return variable.sym;
+    }
+
+    private JCTree.JCExpression valueOf(ScalarValue input) {
+        return input.value() == null ? maker.createDefaultValue(input.type()) : maker.identifier(input.value());
+    }
+
+    private JCTree.JCExpression presenceOf(ScalarValue input) {
+        return input.presence() == null ? maker.trees().Literal(input.present()) : maker.identifier(input.presence());
+    }
+
+    private boolean isAlwaysPresent(ScalarValue input) {
+        return input.presence() == null && input.present();
+    }
+
+    private boolean isAlwaysEmpty(ScalarValue input) {
+        return input.presence() == null && !input.present();
+    }
+
+    private boolean isBox(Type type) {
+        return type != null
+                && !type.isPrimitive()
+                && maker.types().unboxedType(type).isPrimitive();
+    }
+
+    private JCTree.JCExpression inline(JCTree.JCExpression argument, Symbol.VarSymbol variable) {
+        var values = variable == null ? List.<JCTree.JCExpression>nil() : List.<JCTree.JCExpression>of(maker.identifier(variable));
+        var skipped = TreeInfo.skipParens(argument);
+        if(skipped instanceof JCTree.JCLambda lambda){
+            var body = new ParameterSubstitutor(lambda.params.map(parameter -> parameter.sym), variable)
+                    .translate(findLambdaExpression(lambda));
+            return translator.apply(body);
+        }
+
+        if(skipped instanceof JCTree.JCMemberReference reference){
+            var selected = reference.kind == JCTree.JCMemberReference.ReferenceKind.STATIC
+                    ? maker.trees().Select(maker.typeExpression(reference.sym.owner.type), reference.sym)
+                    : maker.trees().Select(values.head, reference.sym);
+            var invocationArguments = reference.kind == JCTree.JCMemberReference.ReferenceKind.STATIC ? values : values.tail;
+            return maker.trees()
+                    .App(selected, invocationArguments)
+                    .setType(Elements.getReturnType(reference.referentType));
+        }
+
+        return translator.apply(maker.trees().App(maker.trees().Select(translator.apply(argument), Elements.getFunctionalInterfaceMethod(argument.type.asElement())), values));
+    }
+
+    private boolean isFusable(JCTree.JCMethodInvocation link, boolean terminal) {
+        var instruction = instructionOf(link);
+        if(!LINKS.contains(instruction) && !(terminal && TERMINALS.contains(instruction))){
+            return false;
+        }
+
+        var returnsOptional = instruction.equals("flatMap") || instruction.equals("or");
+        return link.getArguments()
+                .stream()
+                .map(TreeInfo::skipParens)
+                .filter(argument -> returnsOptional || argument instanceof JCTree.JCFunctionalExpression)
+                .allMatch(this::isInlinable);
+    }
+
+    private boolean isInlinable(JCTree.JCExpression argument) {
+        if(argument instanceof JCTree.JCLambda lambda){
+            return findLambdaExpression(lambda) != null;
+        }
+
+        if(argument instanceof JCTree.JCMemberReference reference){
+            return reference.varargsElement == null
+                    && reference.sym instanceof Symbol.MethodSymbol
+                    && (reference.sym.flags() & Flags.PROTECTED) == 0
+                    && (reference.kind == JCTree.JCMemberReference.ReferenceKind.STATIC || reference.kind == JCTree.JCMemberReference.ReferenceKind.UNBOUND);
+        }
+
+        return false;
+    }
+
+    private JCTree.JCExpression findLambdaExpression(JCTree.JCLambda lambda) {
+        if(lambda.getBodyKind() == JCTree.JCLambda.BodyKind.EXPRESSION){
+            return (JCTree.JCExpression) lambda.getBody();
+        }
+
+        var block = (JCTree.JCBlock) lambda.getBody();
+        if(block.getStatements().size() != 1 || !(block.getStatements().head instanceof JCTree.JCReturn returner)){
+            return null;
+        }
+
+        return returner.getExpression();
+    }
+
+    private boolean isSideEffectFree(JCTree.JCExpression expression) {
+        var skipped = TreeInfo.skipParens(expression);
+        return skipped instanceof JCTree.JCLiteral
+                || (skipped instanceof JCTree.JCIdent identifier && identifier.sym instanceof Symbol.VarSymbol);
+    }
+
+    private Type elementType(Type optionalType) {
+        if(maker.isPrimitiveOptional(optionalType)){
+            return maker.unboxWrapper(optionalType);
+        }
+
+        if(optionalType == null || optionalType.getTypeArguments().isEmpty()){
+            return null;
+        }
+
+        return maker.boxed(maker.unboxWrapper(optionalType));
+    }
+
+    private String instructionOf(JCTree.JCMethodInvocation invocation) {
+        return symbolFor(invocation).getSimpleName().toString();
+    }
+
+    private boolean isOwnedByOptional(JCTree.JCMethodInvocation invocation) {
+        var selected = symbolFor(invocation);
+        return selected != null
+                && selected.getEnclosingElement() instanceof Symbol.ClassSymbol classSymbol
+                && (classSymbol.getQualifiedName().contentEquals(Optional.class.getName()) || maker.isPrimitiveOptional(classSymbol.type));
+    }
+
+    @RequiredArgsConstructor
+    private class ParameterSubstitutor extends TreeTranslator {
+        private final List<Symbol.VarSymbol> parameters;
+        private final Symbol.VarSymbol variable;
+
+        @Override
+        public void visitIdent(JCTree.JCIdent tree) {
+            super.visitIdent(tree);
+            if(variable == null || !parameters.contains(tree.sym)){
+                return;
+            }
+
+            this.result = maker.identifier(variable);
+        }
+    }
+
+    private record ScalarValue(Symbol.VarSymbol value, Symbol.VarSymbol presence, boolean present, Type type) {
+
+    }
+}
@@ -0,0 +1,330 @@
+package it.auties.optional.tree;
+
+import com.sun.tools.javac.code.Attribute;
+import com.sun.tools.javac.code.BoundKind;
+import com.sun.tools.javac.code.Flags;
+import com.sun.tools.javac.code.Kinds;
+import com.sun.tools.javac.code.Symbol;
+import com.sun.tools.javac.code.Type;
+import com.sun.tools.javac.code.TypeTag;
+import com.sun.tools.javac.comp.Annotate;
+import com.sun.tools.javac.tree.JCTree;
+import com.sun.tools.javac.util.List;
+import com.sun.tools.javac.util.Name;
+import com.sun.tools.javac.util.Pair;
+import it.auties.optional.annotation.Desugared;
+import it.auties.optional.util.OptionalManager;
+import it.auties.optional.util.Sentinels;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+import static com.sun.tools.javac.util.List.nil;
+
+public class DesugarMetadata {
+    private static final String EXTENDS_PREFIX = "? extends ";
+    private static final String SUPER_PREFIX = "? super ";
+    private final Maker maker;
+    private final OptionalManager manager;
+    private final Annotate annotate;
+    private final Symbol.ClassSymbol annotationClass;
+    private final Symbol.MethodSymbol valueMember;
+    private final Symbol.MethodSymbol parametersMember;
+    private final Map<TypeTag, Symbol.MethodSymbol> sentinelMembers;
+    private final Map<Symbol, String> sentinelMismatches;
+    private boolean restored;
+
+    public DesugarMetadata(Maker maker, Annotate annotate) {
+        this.maker = maker;
+        this.manager = maker.manager();
+        this.annotate = annotate;
+        var annotationPackage = new Symbol.PackageSymbol(maker.names().fromString(Desugared.class.getPackageName()), maker.symtab().noSymbol);
+        this.annotationClass = new Symbol.ClassSymbol(Flags.PUBLIC | Flags.INTERFACE | Flags.ANNOTATION, maker.names().fromString(Desugared.class.getSimpleName()), annotationPackage);
+        this.valueMember = createMember("value", maker.symtab().stringType);
+        this.parametersMember = createMember("parameters", new Type.ArrayType(maker.symtab().stringType, maker.symtab().arrayClass));
+        this.sentinelMembers = new EnumMap<>(TypeTag.class);
+        sentinelMembers.put(TypeTag.INT, createMember(Sentinels.INT_OPTION, maker.symtab().intType));
+        sentinelMembers.put(TypeTag.LONG, createMember(Sentinels.LONG_OPTION, maker.symtab().longType));
+        sentinelMembers.put(TypeTag.DOUBLE, createMember(Sentinels.DOUBLE_OPTION, maker.symtab().doubleType));
+        this.sentinelMismatches = new HashMap<>();
+    }
+
+    private Symbol.MethodSymbol createMember(String name, Type type) {
+        var methodType = new Type.MethodType(nil(), type, nil(), maker.symtab().methodClass);
+        return new Symbol.MethodSymbol(Flags.PUBLIC | Flags.ABSTRACT, maker.names().fromString(name), methodType, annotationClass);
+    }
+
+    public Symbol.Completer wrap(Symbol.Completer completer) {
+        return symbol -> {
+            completer.complete(symbol);
+            if(symbol instanceof Symbol.ClassSymbol classSymbol){
+                annotate.normal(() -> load(classSymbol));
+                annotate.flush();
+            }
+        };
+    }
+
+    public void record(Symbol symbol) {
+        if((symbol.flags() & (Flags.PRIVATE | Flags.SYNTHETIC)) != 0){
+            return;
+        }
+
+        var originalType = manager.originalType(symbol);
+        if(symbol instanceof Symbol.VarSymbol){
+            if(isOptional(originalType) && !isOptional(symbol.type)){
+                symbol.appendAttributes(List.of(createAnnotation(originalType.toString(), nil(), originalType)));
+            }
+
+            return;
+        }
+
+        var returnType = isOptional(originalType.getReturnType()) && !isOptional(symbol.type.getReturnType()) ? originalType.getReturnType().toString() : "";
+        var parameters = originalType.getParameterTypes()
+                .map(type -> isOptional(type) ? type.toString() : "");
+        if(returnType.isEmpty() && parameters.stream().allMatch(String::isEmpty)){
+            return;
+        }
+
+        symbol.appendAttributes(List.of(createAnnotation(returnType, parameters.stream().anyMatch(type -> !type.isEmpty()) ? parameters : nil(), originalType)));
+    }
+
+    private Attribute.Compound createAnnotation(String type, List<String> parameters, Type originalType) {
+        var values = List.<Pair<Symbol.MethodSymbol, Attribute>>nil();
+        if(!type.isEmpty()){
+            values = values.append(new Pair<>(valueMember, createConstant(type)));
+        }
+
+        if(!parameters.isEmpty()){
+            var elements = parameters.map(this::createConstant).toArray(Attribute[]::new);
+            values = values.append(new Pair<>(parametersMember, new Attribute.Array(parametersMember.type.getReturnType(), elements)));
+        }
+
+        for(var tag : findSentinelTags(originalType)){
+            var sentinel = findSentinel(maker.sentinels(), tag);
+            if(!sentinel.equals(findSentinel(Sentinels.DEFAULT, tag))){
+                var member = sentinelMembers.get(tag);
+                values = values.append(new Pair<>(member, new Attribute.Constant(member.type.getReturnType(), sentinel)));
+            }
+        }
+
+        return new Attribute.Compound(annotationClass.type, values);
+    }
+
+    private List<TypeTag> findSentinelTags(Type originalType) {
+        var types = originalType instanceof Type.MethodType || originalType instanceof Type.ForAll ? originalType.getParameterTypes().prepend(originalType.getReturnType()) : List.of(originalType);
+        return types.stream()
+                .filter(maker::isPrimitiveOptional)
+                .map(type -> maker.unboxWrapper(type).getTag())
+                .distinct()
+                .collect(List.collector());
+    }
+
+    private Object findSentinel(Sentinels sentinels, TypeTag tag) {
+        return switch (tag){
+            case INT -> sentinels.intSentinel();
+            case LONG -> sentinels.longSentinel();
+            default -> sentinels.doubleSentinel();
+        };
+    }
+
+    private Object findSentinel(Attribute.Compound compound, TypeTag tag) {
+        return compound.member(sentinelMembers.get(tag).name) instanceof Attribute.Constant constant ? constant.getValue() : findSentinel(Sentinels.DEFAULT, tag);
+    }
+
+    public void checkSentinels(JCTree tree, Symbol symbol) {
+        var mismatch = sentinelMismatches.get(symbol);
+        if(mismatch == null){
+            return;
+        }
+
+        maker.log().rawError(tree.pos, "error: %s.%s was desugared with %s".formatted(symbol.owner.getSimpleName(), symbol.name, mismatch));
+    }
+
+    private Attribute createConstant(String value) {
+        return new Attribute.Constant(maker.symtab().stringType, value);
+    }
+
+    private void load(Symbol.ClassSymbol owner) {
+        if(owner.members_field == null){
+            return;
+        }
+
+        for(var member : owner.members().getSymbols(symbol -> symbol.kind == Kinds.Kind.MTH || symbol.kind == Kinds.Kind.VAR)){
+            member.getRawAttributes()
+                    .stream()
+                    .filter(compound -> compound.type.tsym.getQualifiedName().contentEquals(Desugared.class.getName()))
+                    .findFirst()
+                    .ifPresent(compound -> load(member, compound));
+        }
+    }
+
+    private void load(Symbol member, Attribute.Compound compound) {
+        var desugaredType = member.type;
+        var type = findValue(compound, valueMember.name);
+        var typeVariables = member.enclClass().type.allparams();
+        var originalType = member instanceof Symbol.VarSymbol ? createOptionalType(type, desugaredType, typeVariables)
+                : createMethodType(desugaredType, type, findParameters(compound, desugaredType.getParameterTypes().size()), typeVariables);
+        manager.importedTypes().put(member, desugaredType);
+        manager.originalTypes().put(member, manager.snapshot(originalType));
+        var mismatches = findSentinelTags(originalType)
+                .stream()
+                .filter(tag -> !findSentinel(compound, tag).equals(findSentinel(maker.sentinels(), tag)))
+                .collect(List.collector());
+        if(!mismatches.isEmpty()){
+            var declared = mismatches.stream().map(tag -> "%s=%s".formatted(sentinelMembers.get(tag).name, findSentinel(compound, tag))).collect(Collectors.joining(", "));
+            var used = mismatches.stream().map(tag -> "%s=%s".formatted(sentinelMembers.get(tag).name, findSentinel(maker.sentinels(), tag))).collect(Collectors.joining(", "));
+            sentinelMismatches.put(member, "%s, but this compilation uses %s".formatted(declared, used));
+        }
+
+        if(restored){
+            return;
+        }
+
+        member.type = originalType;
+        member.erasure_field = null;
+    }
+
+    private Type createMethodType(Type desugaredType, String returnType, List<String> parameters, List<Type> typeVariables) {
+        if(desugaredType instanceof Type.ForAll generic){
+            return new Type.ForAll(generic.tvars, createMethodType(generic.qtype, returnType, parameters, typeVariables.prependList(generic.tvars)));
+        }
+
+        var methodType = desugaredType.asMethodType();
+        var parameterTypes = List.<Type>nil();
+        for(var parameterType : methodType.argtypes){
+            parameterTypes = parameterTypes.append(createOptionalType(parameters.head, parameterType, typeVariables));
+            parameters = parameters.tail;
+        }
+
+        return new Type.MethodType(parameterTypes, createOptionalType(returnType, methodType.restype, typeVariables), methodType.thrown, methodType.tsym);
+    }
+
+    private Type createOptionalType(String originalType, Type desugaredType, List<Type> typeVariables) {
+        if(originalType.isEmpty()){
+            return desugaredType;
+        }
+
+        var wrapperName = originalType.split("<", 2)[0];
+        var valueType = Objects.requireNonNullElse(parseType(findTypeArgument(originalType), typeVariables), desugaredType);
+        return maker.symbols()
+                .optionalSymbols()
+                .stream()
+                .filter(symbol -> symbol.getQualifiedName().contentEquals(wrapperName))
+                .findFirst()
+                .map(symbol -> maker.createOptionalType((Symbol.ClassSymbol) symbol, valueType))
+                .orElse(desugaredType);
+    }
+
+    private String findTypeArgument(String type) {
+        var start = type.indexOf('<');
+        return start < 0 ? "" : type.substring(start + 1, type.lastIndexOf('>'));
+    }
+
+    private Type parseType(String name, List<Type> typeVariables) {
+        if(name.isEmpty()){
+            return null;
+        }
+
+        if(name.equals("?")){
+            return new Type.WildcardType(maker.symtab().objectType, BoundKind.UNBOUND, maker.symtab().boundClass);
+        }
+
+        if(name.startsWith(EXTENDS_PREFIX) || name.startsWith(SUPER_PREFIX)){
+            var extendsBound = name.startsWith(EXTENDS_PREFIX);
+            var bound = parseType(name.substring(extendsBound ? EXTENDS_PREFIX.length() : SUPER_PREFIX.length()), typeVariables);
+            return bound == null ? null : new Type.WildcardType(bound, extendsBound ? BoundKind.EXTENDS : BoundKind.SUPER, maker.symtab().boundClass);
+        }
+
+        if(name.endsWith("[]")){
+            var component = parseType(name.substring(0, name.length() - 2), typeVariables);
+            return component == null ? null : new Type.ArrayType(component, maker.symtab().arrayClass);
+        }
+
+        var typeVariable = typeVariables.stream()
+                .filter(candidate -> candidate.tsym.name.contentEquals(name))
+                .findFirst();
+        if(typeVariable.isPresent()){
+            return typeVariable.get();
+        }
+
+        var start = name.indexOf('<');
+        var owner = maker.symbols().findClass(start < 0 ? name : name.substring(0, start));
+        if(owner == null){
+            return null;
+        }
+
+        if(start < 0){
+            return maker.types().erasure(owner.type);
+        }
+
+        var arguments = List.<Type>nil();
+        for(var argument : splitTypeArguments(findTypeArgument(name))){
+            var argumentType = parseType(argument, typeVariables);
+            if(argumentType == null){
+                return null;
+            }
+
+            arguments = arguments.append(argumentType);
+        }
+
+        return new Type.ClassType(owner.type.getEnclosingType(), arguments, owner);
+    }
+
+    private List<String> splitTypeArguments(String arguments) {
+        var result = List.<String>nil();
+        var depth = 0;
+        var start = 0;
+        for(var index = 0; index < arguments.length(); index++){
+            switch (arguments.charAt(index)){
+                case '<' -> depth++;
+                case '>' -> depth--;
+                case ',' -> {
+                    if(depth == 0){
+                        result = result.append(arguments.substring(start, index).trim());
+                        start = index + 1;
+                    }
+                }
+            }
+        }
+
+        return result.append(arguments.substring(start).trim());
+    }
+
+    private String findValue(Attribute.Compound compound, Name name) {
+        return compound.member(name) instanceof Attribute.Constant constant ? (String) constant.getValue() : "";
+    }
+
+    private List<String> findParameters(Attribute.Compound compound, int size) {
+        var parameters = List.<String>nil();
+        if(compound.member(parametersMember.name) instanceof Attribute.Array array){
+            for(var value : array.values){
+                parameters = parameters.append(value instanceof Attribute.Constant constant ? (String) constant.getValue() : "");
+            }
+        }
+
+        while(parameters.size() < size){
+            parameters = parameters.append("");
+        }
+
+        return parameters;
+    }
+
+    public void restore() {
+        if(restored){
+            return;
+        }
+
+        manager.importedTypes().forEach((member, desugaredType) -> {
+            member.type = desugaredType;
+            member.erasure_field = null;
+        });
+        this.restored = true;
+    }
+
+    private boolean isOptional(Type type) {
+        return type != null && type.tsym != null && maker.hasOptionalName(type.tsym.getQualifiedName());
+    }
+}
@@ -0,0 +1,290 @@
+package it.auties.optional.tree;
+
+import com.sun.tools.javac.code.Flags;
+import com.sun.tools.javac.code.Symbol;
+import com.sun.tools.javac.code.Type;
+import com.sun.tools.javac.code.TypeTag;
+import com.sun.tools.javac.code.Types;
+import com.sun.tools.javac.tree.JCTree;
+import com.sun.tools.javac.tree.TreeInfo;
+import com.sun.tools.javac.tree.TreeScanner;
+import com.sun.tools.javac.util.List;
+import com.sun.tools.javac.util.ListBuffer;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+public class ElementEncoder {
+    private final Maker maker;
+    private final Types types;
+    private final StreamStages streams;
+    private final Set<JCTree> rawElements;
+    private final Set<Symbol> rawLocals;
+
+    public ElementEncoder(Maker maker, Types types, StreamStages streams) {
+        this.maker = maker;
+        this.types = types;
+        this.streams = streams;
+        this.rawElements = new HashSet<>();
+        this.rawLocals = new HashSet<>();
+    }
+
+    private boolean isElement(Type declaredType) {
+        return declaredType != null && declaredType.hasTag(TypeTag.TYPEVAR);
+    }
+
+    public boolean hasElementReceiver(JCTree.JCMethodInvocation tree) {
+        return tree.meth instanceof JCTree.JCFieldAccess access
+                && access.selected.type != null
+                && access.selected.type.getTypeArguments().stream().anyMatch(type -> isOptionalType(types.wildUpperBound(type)));
+    }
+
+    public boolean encodesArgument(Type parameterType, boolean elementReceiver) {
+        return isElementParameter(parameterType)
+                || (elementReceiver && types.isSameType(parameterType, maker.symtab().objectType));
+    }
+
+    private boolean isElementParameter(Type parameterType) {
+        return isElement(parameterType) || (parameterType.hasTag(TypeTag.ARRAY) && isElement(types.elemtype(parameterType)));
+    }
+
+    public boolean returnsElement(JCTree.JCFunctionalExpression tree) {
+        var descriptor = types.findDescriptorSymbol(tree.target.tsym);
+        return isElement(descriptor.type.getReturnType())
+                && isOptionalType(types.findDescriptorType(tree.target).getReturnType());
+    }
+
+    public boolean acceptsElement(JCTree.JCFunctionalExpression tree) {
+        var parameterTypes = types.findDescriptorSymbol(tree.target.tsym).type.getParameterTypes();
+        return !parameterTypes.isEmpty()
+                && isElement(parameterTypes.head)
+                && isOptionalType(types.findDescriptorType(tree.target).getParameterTypes().head);
+    }
+
+    public JCTree.JCExpression encode(JCTree.JCExpression value, Type optionalType, Symbol owner) {
+        return maker.createElement(value, optionalType, owner);
+    }
+
+    public boolean isElementRead(Symbol selected) {
+        return isElement(selected.type.getReturnType());
+    }
+
+    public JCTree.JCExpression decode(JCTree.JCMethodInvocation invocation, Symbol selected, Symbol owner) {
+        if(rawElements.remove(invocation)){
+            invocation.type = maker.symtab().objectType;
+            return invocation;
+        }
+
+        return isElement(selected.type.getReturnType()) ? maker.createElementValue(invocation, invocation.type, owner) : maker.createUnwrap(invocation, invocation.type);
+    }
+
+    public void markRawComparison(JCTree.JCBinary tree) {
+        if(!tree.hasTag(JCTree.Tag.EQ) && !tree.hasTag(JCTree.Tag.NE)){
+            return;
+        }
+
+        markRawElement(tree.lhs, tree.rhs);
+        markRawElement(tree.rhs, tree.lhs);
+    }
+
+    private void markRawElement(JCTree.JCExpression operand, JCTree.JCExpression other) {
+        if(TreeInfo.isNull(other)){
+            keepRaw(operand);
+        }
+    }
+
+    public void keepRaw(JCTree.JCExpression operand) {
+        var value = TreeInfo.skipParens(operand);
+        if(value instanceof JCTree.JCMethodInvocation || (value instanceof JCTree.JCIdent identifier && rawLocals.contains(identifier.sym))){
+            rawElements.add(value);
+        }
+    }
+
+    public boolean isRawLocal(Symbol symbol) {
+        return rawLocals.contains(symbol);
+    }
+
+    public boolean keepRawLocal(JCTree.JCVariableDecl variable, JCTree body) {
+        if(body == null || !isComparedWithNull(body, variable.sym)){
+            return false;
+        }
+
+        rawLocals.add(variable.sym);
+        keepRaw(variable.init);
+        return true;
+    }
+
+    private boolean isComparedWithNull(JCTree body, Symbol variable) {
+        var result = new boolean[1];
+        new TreeScanner(){
+            @Override
+            public void visitBinary(JCTree.JCBinary tree) {
+                if((tree.hasTag(JCTree.Tag.EQ) || tree.hasTag(JCTree.Tag.NE)) && (isNullComparison(tree.lhs, tree.rhs) || isNullComparison(tree.rhs, tree.lhs))){
+                    result[0] = true;
+                }
+
+                super.visitBinary(tree);
+            }
+
+            private boolean isNullComparison(JCTree.JCExpression operand, JCTree.JCExpression other) {
+                return TreeInfo.isNull(other) && TreeInfo.skipParens(operand) instanceof JCTree.JCIdent identifier && identifier.sym == variable;
+            }
+        }.scan(body);
+        return result[0];
+    }
+
+    public JCTree.JCExpression decodeLocal(JCTree.JCIdent identifier, Type optionalType, Symbol owner) {
+        if(rawElements.remove(identifier)){
+            identifier.type = maker.symtab().objectType;
+            return identifier;
+        }
+
+        return maker.createElementValue(identifier, optionalType, owner);
+    }
+
+    public JCTree.JCExpression concatenate(JCTree.JCExpression raw, Type optionalType, Symbol owner, Function<JCTree.JCExpression, JCTree.JCExpression> printer) {
+        var variable = maker.createLocalVariable(maker.uniqueName("element"), maker.symtab().objectType, raw, owner);
+        var printed = printer.apply(maker.createElementValue(maker.identifier(variable.sym), optionalType, owner));
+        var missing = maker.trees().Literal("null");
+        return maker.createLet(List.of(variable), maker.createConditional(maker.createNullCheck(maker.identifier(variable.sym), false), missing, printed, maker.symtab().stringType));
+    }
+
+    public void clear() {
+        rawElements.clear();
+        rawLocals.clear();
+    }
+
+    public void eraseParameters(JCTree.JCMethodInvocation tree, Symbol selected) {
+        if(!(tree.meth.type instanceof Type.MethodType methodType)){
+            return;
+        }
+
+        var declaredTypes = selected.type.getParameterTypes();
+        var parameterTypes = new ListBuffer<Type>();
+        for(var parameterType : methodType.argtypes){
+            var declaredType = declaredTypes.isEmpty() ? null : declaredTypes.head;
+            declaredTypes = declaredTypes.isEmpty() ? declaredTypes : declaredTypes.tail;
+            parameterTypes.append(isElement(declaredType) && isOptionalType(parameterType) ? maker.symtab().objectType : parameterType);
+        }
+
+        if(isOptionalType(tree.varargsElement) && isElementParameter(selected.type.getParameterTypes().last())){
+            tree.varargsElement = maker.symtab().objectType;
+        }
+
+        tree.meth.type = new Type.MethodType(parameterTypes.toList(), methodType.restype, methodType.thrown, methodType.tsym);
+    }
+
+    public void eraseTarget(JCTree.JCFunctionalExpression tree) {
+        if(!(tree.target instanceof Type.ClassType target)){
+            return;
+        }
+
+        var typeArguments = target.getTypeArguments().map(type -> isOptionalType(type) ? maker.symtab().objectType : type);
+        var erased = new Type.ClassType(target.getEnclosingType(), typeArguments, target.tsym);
+        tree.target = erased;
+        tree.type = erased;
+    }
+
+    public boolean decodeParameters(JCTree.JCLambda tree, List<Type> parameterTypes, Type returnType) {
+        var parameters = new ListBuffer<JCTree.JCVariableDecl>();
+        var declarations = new ListBuffer<JCTree.JCStatement>();
+        for(var parameter : tree.params){
+            var parameterType = parameterTypes.head;
+            parameterTypes = parameterTypes.tail;
+            if(!isOptionalType(parameterType) || isOptionalType(parameter.sym.type)){
+                parameters.append(parameter);
+                continue;
+            }
+
+            var element = new Symbol.VarSymbol(Flags.PARAMETER | Flags.SYNTHETIC, maker.uniqueName("element"), maker.symtab().objectType, parameter.sym.owner);
+            parameters.append(maker.trees().at(parameter.pos).VarDef(element, null));
+            parameter.sym.flags_field &= ~Flags.PARAMETER;
+            declarations.append(maker.trees().at(parameter.pos).VarDef(parameter.sym, maker.createElementValue(maker.identifier(element), parameterType, parameter.sym.owner)));
+        }
+
+        if(declarations.isEmpty()){
+            return false;
+        }
+
+        tree.params = parameters.toList();
+        if(tree.body instanceof JCTree.JCBlock block){
+            block.stats = block.stats.prependList(declarations.toList());
+            return true;
+        }
+
+        var expression = (JCTree.JCExpression) tree.body;
+        var statement = returnType.hasTag(TypeTag.VOID) ? maker.trees().Exec(expression) : maker.trees().Return(expression);
+        tree.body = maker.trees().at(expression.pos).Block(0L, declarations.append(statement).toList());
+        tree.canCompleteNormally = returnType.hasTag(TypeTag.VOID);
+        return true;
+    }
+
+    public void decodeVariable(JCTree.JCEnhancedForLoop tree, Type variableType) {
+        var variable = tree.var.sym;
+        var element = new Symbol.VarSymbol(Flags.SYNTHETIC, maker.uniqueName("element"), maker.symtab().objectType, variable.owner);
+        var declaration = maker.trees().at(tree.var.pos).VarDef(variable, maker.createElementValue(maker.identifier(element), variableType, variable.owner));
+        tree.var = maker.trees().at(tree.var.pos).VarDef(element, null);
+        tree.body = maker.trees().at(tree.body.pos).Block(0L, List.of(declaration, tree.body));
+    }
+
+    public JCTree.JCLambda createDecoder(Type optionalType, int position, Symbol owner) {
+        var element = maker.trees().at(position).Param(maker.uniqueName("element"), maker.symtab().objectType, owner);
+        var decoder = maker.trees().Lambda(List.of(element), maker.createElementValue(maker.identifier(element.sym), optionalType, owner));
+        decoder.type = streams.createFunctionType(maker.symtab().objectType);
+        decoder.target = decoder.type;
+        decoder.paramKind = JCTree.JCLambda.ParameterKind.EXPLICIT;
+        return decoder;
+    }
+
+    public JCTree.JCLambda bridgeReference(JCTree.JCMemberReference tree, Symbol owner, Consumer<JCTree.JCMethodInvocation> typer) {
+        var descriptorType = types.findDescriptorType(tree.target);
+        var parameters = new ListBuffer<JCTree.JCVariableDecl>();
+        var arguments = new ListBuffer<JCTree.JCExpression>();
+        for(var parameterType : descriptorType.getParameterTypes()){
+            var element = isOptionalType(parameterType);
+            var parameter = maker.trees().at(tree.pos).Param(maker.uniqueName("element"), element ? maker.symtab().objectType : types.erasure(parameterType), owner);
+            parameters.append(parameter);
+            arguments.append(element ? maker.createElementValue(maker.identifier(parameter.sym), parameterType, owner) : maker.identifier(parameter.sym));
+        }
+
+        var receiver = switch (tree.kind){
+            case STATIC -> maker.typeExpression(tree.sym.owner.type);
+            case UNBOUND -> arguments.next();
+            default -> tree.expr;
+        };
+        var invocation = maker.trees().App(maker.trees().Select(receiver, tree.sym), arguments.toList());
+        invocation.type = maker.unboxWrapper(descriptorType.getReturnType());
+        typer.accept(invocation);
+        return createBridge(tree, parameters.toList(), encode(invocation, descriptorType.getReturnType(), owner));
+    }
+
+    public JCTree.JCLambda bridgeOptionalReference(JCTree.JCMemberReference tree, Symbol owner, BiFunction<JCTree.JCMethodInvocation, JCTree.JCExpression, JCTree.JCExpression> desugarer) {
+        var descriptorType = types.findDescriptorType(tree.target);
+        var optionalType = descriptorType.getParameterTypes().head;
+        var element = maker.trees().at(tree.pos).Param(maker.uniqueName("element"), maker.symtab().objectType, owner);
+        var parameters = descriptorType.getParameterTypes()
+                .tail
+                .map(parameterType -> maker.trees().at(tree.pos).Param(maker.uniqueName("element"), types.erasure(parameterType), owner));
+        var arguments = parameters.<JCTree.JCExpression>map(parameter -> maker.identifier(parameter.sym));
+        var value = maker.createElementValue(maker.identifier(element.sym), optionalType, owner);
+        var invocation = maker.trees().App(maker.trees().Select(value, tree.sym), arguments);
+        invocation.type = descriptorType.getReturnType();
+        return createBridge(tree, parameters.prepend(element), desugarer.apply(invocation, value));
+    }
+
+    private JCTree.JCLambda createBridge(JCTree.JCMemberReference tree, List<JCTree.JCVariableDecl> parameters, JCTree.JCExpression body) {
+        var lambda = maker.trees().Lambda(parameters, body);
+        lambda.type = tree.type;
+        lambda.target = tree.target;
+        eraseTarget(lambda);
+        lambda.paramKind = JCTree.JCLambda.ParameterKind.EXPLICIT;
+        return lambda;
+    }
+
+    private boolean isOptionalType(Type type) {
+        return type != null && type.tsym != null && maker.hasOptionalName(type.tsym.getQualifiedName());
+    }
+}
@@ -54,4 +54,10 @@ public class Elements {
     private boolean noFlag(Symbol symbol, long flag) {
         return (symbol.flags() & flag) != flag;
     }
+
+    public boolean isAnnotated(Symbol symbol, Class<?> annotation){
+        return symbol.getAnnotationMirrors()
+                .stream()
+                .anyMatch(mirror -> mirror.type.tsym.getQualifiedName().contentEquals(annotation.getName()));
+    }
 }
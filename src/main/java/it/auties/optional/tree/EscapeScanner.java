@@ -0,0 +1,122 @@
+package it.auties.optional.tree;
+
+import com.sun.tools.javac.code.Symbol;
+import com.sun.tools.javac.code.Type;
+import com.sun.tools.javac.tree.JCTree;
+import com.sun.tools.javac.tree.TreeInfo;
+import com.sun.tools.javac.tree.TreeScanner;
+import com.sun.tools.javac.util.List;
+import lombok.RequiredArgsConstructor;
+
+@RequiredArgsConstructor
+public class EscapeScanner extends TreeScanner {
+    private final List<Symbol.VarSymbol> symbols;
+    private int uses;
+    private int primitiveUses;
+    private boolean modified;
+
+    public boolean escapes(JCTree.JCExpression expression){
+        if(isTracked(expression)){
+            return false;
+        }
+
+        this.uses = 0;
+        this.primitiveUses = 0;
+        this.modified = false;
+        scan(expression);
+        return modified || uses != primitiveUses;
+    }
+
+    @Override
+    public void visitIdent(JCTree.JCIdent tree) {
+        if(symbols.contains(tree.sym)){
+            uses++;
+        }
+    }
+
+    @Override
+    public void visitBinary(JCTree.JCBinary tree) {
+        var operands = tree.operator.type.getParameterTypes();
+        checkPrimitiveUse(tree.lhs, operands.head);
+        checkPrimitiveUse(tree.rhs, operands.tail.head);
+        super.visitBinary(tree);
+    }
+
+    @Override
+    public void visitUnary(JCTree.JCUnary tree) {
+        if(tree.getTag().isIncOrDecUnaryOp()){
+            checkModified(tree.arg);
+        }else {
+            checkPrimitiveUse(tree.arg, tree.operator.type.getParameterTypes().head);
+        }
+
+        super.visitUnary(tree);
+    }
+
+    @Override
+    public void visitAssign(JCTree.JCAssign tree) {
+        checkModified(tree.lhs);
+        checkPrimitiveUse(tree.rhs, tree.lhs.type);
+        super.visitAssign(tree);
+    }
+
+    @Override
+    public void visitAssignop(JCTree.JCAssignOp tree) {
+        checkModified(tree.lhs);
+        checkPrimitiveUse(tree.rhs, tree.operator.type.getParameterTypes().tail.head);
+        super.visitAssignop(tree);
+    }
+
+    @Override
+    public void visitApply(JCTree.JCMethodInvocation tree) {
+        var parameters = tree.meth.type.getParameterTypes();
+        var fixedParameters = tree.varargsElement == null ? parameters.size() : parameters.size() - 1;
+        var arguments = tree.args;
+        for(var index = 0; index < fixedParameters && arguments.nonEmpty(); index++, parameters = parameters.tail, arguments = arguments.tail){
+            checkPrimitiveUse(arguments.head, parameters.head);
+        }
+
+        super.visitApply(tree);
+    }
+
+    @Override
+    public void visitTypeCast(JCTree.JCTypeCast tree) {
+        checkPrimitiveUse(tree.expr, tree.clazz.type);
+        super.visitTypeCast(tree);
+    }
+
+    @Override
+    public void visitConditional(JCTree.JCConditional tree) {
+        checkUnboxedUse(tree.cond);
+        checkPrimitiveUse(tree.truepart, tree.type);
+        checkPrimitiveUse(tree.falsepart, tree.type);
+        super.visitConditional(tree);
+    }
+
+    @Override
+    public void visitIndexed(JCTree.JCArrayAccess tree) {
+        checkUnboxedUse(tree.index);
+        super.visitIndexed(tree);
+    }
+
+    private void checkPrimitiveUse(JCTree.JCExpression expression, Type expected) {
+        if(expected != null && expected.isPrimitive()){
+            checkUnboxedUse(expression);
+        }
+    }
+
+    private void checkUnboxedUse(JCTree.JCExpression expression) {
+        if(isTracked(expression)){
+            primitiveUses++;
+        }
+    }
+
+    private void checkModified(JCTree.JCExpression expression) {
+        modified |= isTracked(expression);
+    }
+
+    private boolean isTracked(JCTree.JCExpression expression) {
+        return TreeInfo.skipParens(expression) instanceof JCTree.JCIdent identifier
+                && symbols.contains(identifier.sym);
+    }
+}
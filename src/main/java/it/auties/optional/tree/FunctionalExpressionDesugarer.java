@@ -7,6 +7,7 @@ import com.sun.source.tree.Tree;
 import com.sun.source.util.TreeScanner;
 import com.sun.tools.javac.code.Symbol;
 import com.sun.tools.javac.code.Type;
+import com.sun.tools.javac.code.TypeTag;
 import com.sun.tools.javac.tree.JCTree;
 import com.sun.tools.javac.tree.TreeTranslator;
 import com.sun.tools.javac.util.List;
@@ -39,6 +40,7 @@ public class FunctionalExpressionDesugarer extends TreeScanner<JCTree.JCMethodDe
         var method = maker.newMethod()
                 .enclosingClass(enclosingClass)
                 .modelMethod(enclosingMethod)
+                .position(lambda.pos)
                 .originalType(lambda.type)
                 .returnType(maker.unboxWrapper(lambda.type))
                 .name("lambda")
@@ -56,6 +58,7 @@ public class FunctionalExpressionDesugarer extends TreeScanner<JCTree.JCMethodDe
         var method = maker.newMethod()
                 .enclosingClass(enclosingClass)
                 .modelMethod(enclosingMethod)
+                .position(reference.pos)
                 .originalType(reference.type)
                 .returnType(maker.unboxWrapper(reference.type))
                 .name("reference")
@@ -83,10 +86,15 @@ public class FunctionalExpressionDesugarer extends TreeScanner<JCTree.JCMethodDe
 
         if(expression instanceof JCTree.JCMemberReference reference){
             var referenceParameters = ((Symbol.MethodSymbol) reference.sym).getParameters();
-            return referenceParameters
+            var parameters = referenceParameters
                     .stream()
                     .map(parameter -> maker.createInferredParameter(parameter.type))
                     .collect(Collectors.toList());
+            if(reference.kind == JCTree.JCMemberReference.ReferenceKind.UNBOUND){
+                parameters.add(0, maker.createInferredParameter(reference.getQualifierExpression().type));
+            }
+
+            return parameters;
         }
 
         throw new IllegalStateException("Cannot create parameters for unknown functional expression: " + expression);
@@ -115,7 +123,8 @@ public class FunctionalExpressionDesugarer extends TreeScanner<JCTree.JCMethodDe
             case STATEMENT -> (JCTree.JCBlock) lambda.getBody();
             case EXPRESSION -> {
                 var expression = (JCTree.JCExpression) lambda.getBody();
-                var parsedExpression = Elements.isVoid(expression.type.asElement()) ? maker.trees().Exec(expression) : maker.trees().Return(expression);
+                var voidCompatible = lambda.getDescriptorType(maker.types()).getReturnType().hasTag(TypeTag.VOID);
+                var parsedExpression = voidCompatible ? maker.trees().Exec(expression) : maker.trees().Return(expression);
                 yield maker.trees().Block(0L, of(parsedExpression.setType(expression.type)));
             }
         };
@@ -127,8 +136,11 @@ public class FunctionalExpressionDesugarer extends TreeScanner<JCTree.JCMethodDe
             return maker.trees().Return(newInstance);
         }
 
-        var selected = maker.trees().Select(reference.getQualifierExpression(), reference.sym);
-        var result = maker.trees().App(selected, parameters.map(maker.trees()::Ident));
+        var unbound = reference.kind == JCTree.JCMemberReference.ReferenceKind.UNBOUND;
+        var receiver = unbound ? maker.trees().Ident(parameters.head) : reference.getQualifierExpression();
+        var arguments = unbound ? parameters.tail : parameters;
+        var selected = maker.trees().Select(receiver, reference.sym);
+        var result = maker.trees().App(selected, arguments.map(maker.trees()::Ident));
         return Elements.isVoid(reference.sym) ? maker.trees().Exec(result) : maker.trees().Return(result);
     }
 
@@ -1,6 +1,7 @@
 package it.auties.optional.tree;
 
 import com.sun.source.tree.MemberReferenceTree;
+import com.sun.tools.javac.code.Flags;
 import com.sun.tools.javac.code.Symbol;
 import com.sun.tools.javac.code.Symtab;
 import com.sun.tools.javac.code.Type;
@@ -9,33 +10,36 @@ import com.sun.tools.javac.comp.Attr;
 import com.sun.tools.javac.comp.Operators;
 import com.sun.tools.javac.tree.JCTree;
 import com.sun.tools.javac.tree.TreeMaker;
-import com.sun.tools.javac.util.JCDiagnostic;
 import com.sun.tools.javac.util.List;
+import com.sun.tools.javac.util.Log;
 import com.sun.tools.javac.util.Name;
 import com.sun.tools.javac.util.Names;
-import it.auties.optional.util.IllegalReflection;
+import it.auties.optional.runtime.OptionalCounters;
 import it.auties.optional.util.OptionalManager;
+import it.auties.optional.util.Sentinels;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
-import lombok.SneakyThrows;
 import lombok.experimental.Accessors;
-import lombok.experimental.ExtensionMethod;
 
 import java.util.NoSuchElementException;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.OptionalDouble;
+import java.util.OptionalInt;
+import java.util.OptionalLong;
 import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
 import static com.sun.tools.javac.code.TypeTag.BOT;
+import static com.sun.tools.javac.code.TypeTag.CLASS;
+import static com.sun.tools.javac.code.TypeTag.DOUBLE;
 import static com.sun.tools.javac.util.List.nil;
 import static com.sun.tools.javac.util.List.of;
 
 @AllArgsConstructor
 @Data
 @Accessors(fluent = true)
-@ExtensionMethod(IllegalReflection.class)
 public class Maker {
     private final TreeMaker trees;
     protected final Names names;
@@ -43,12 +47,11 @@ public class Maker {
     protected final Attr attr;
     protected final Types types;
     private final Operators operators;
-    private Type streamType;
-    private Symbol.ClassSymbol noSuchElementSymbol;
-
-    public Maker(TreeMaker trees, Names names, Symtab symtab, Attr attr, Types types, Operators operators) {
-        this(trees, names, symtab, attr, types, operators, null, null);
-    }
+    private final Log log;
+    private final Sentinels sentinels;
+    private final boolean instrument;
+    private final OptionalManager manager;
+    private final SymbolCache symbols;
 
     public JCTree.JCExpression thisIdentifier(Type type){
         return trees.This(type);
@@ -68,24 +71,25 @@ public class Maker {
     }
 
     public JCTree.JCStatement createThrowNoSuchElementException(){
-        if(noSuchElementSymbol == null){
-            this.noSuchElementSymbol = findBaseModuleClassSymbol(NoSuchElementException.class);
-        }
-
-        var constructor = noSuchElementSymbol.members().findFirst(names.init);
+        var noSuchElementSymbol = symbols.baseClass(NoSuchElementException.class);
+        var constructor = symbols.member(noSuchElementSymbol, "<init>");
         var instance = (JCTree.JCNewClass) trees.Create(constructor, of(trees.Literal("No value present")));
         instance.constructorType = noSuchElementSymbol.asType();
         return trees.Throw(instance)
                 .setType(noSuchElementSymbol.asType());
     }
 
-    public JCTree.JCMethodInvocation makeStream(JCTree.JCExpression argument){
-        if(streamType == null){
-            this.streamType = findBaseModuleClassSymbol(Stream.class).asType();
-        }
+    public JCTree.JCStatement createCounter(Symbol.MethodSymbol site, JCTree.JCExpression value, boolean throwing){
+        var countersType = symbols.runtimeClass(OptionalCounters.class).asType();
+        var counter = symbols.staticMember(countersType.tsym, throwing ? "thrown" : "present");
+        var siteName = trees.Literal("%s.%s".formatted(site.owner.flatName(), site.name));
+        var invocation = trees.App(trees.Select(typeExpression(countersType), counter), of(siteName, createPresenceCheck(value, true)));
+        return trees.Exec(invocation);
+    }
 
-        var members = Objects.requireNonNull(streamType.asElement().members(), "The stream class has no members");
-        var methodSymbol = members.findFirst(names.fromString("ofNullable"));
+    public JCTree.JCMethodInvocation makeStream(JCTree.JCExpression argument){
+        var streamType = symbols.baseClass(Stream.class).asType();
+        var methodSymbol = symbols.staticMember(streamType.tsym, "ofNullable");
         var selected = trees.Select(typeExpression(streamType), methodSymbol);
         return trees.App(selected, argument == null ? nil() : of(argument));
     }
@@ -106,13 +110,36 @@ public class Maker {
         return param;
     }
 
+    public JCTree.JCVariableDecl createLocalVariable(Name name, Type type, JCTree.JCExpression initializer, Symbol owner) {
+        var symbol = new Symbol.VarSymbol(Flags.FINAL | Flags.SYNTHETIC, name, type, owner);
+        return trees.VarDef(symbol, initializer);
+    }
+
+    public JCTree.LetExpr createLet(List<JCTree.JCStatement> statements, JCTree.JCExpression expression) {
+        var let = trees.LetExpr(statements, expression);
+        let.type = expression.type;
+        return let;
+    }
+
+    public JCTree.JCConditional createConditional(JCTree.JCExpression condition, JCTree.JCExpression truePart, JCTree.JCExpression falsePart, Type type) {
+        var conditional = trees.Conditional(condition, truePart, falsePart);
+        conditional.type = type;
+        return conditional;
+    }
+
     public Type unboxWrapper(Type type) {
         if(type == null){
             return null;
         }
 
+        var primitiveType = findPrimitiveOptionalType(type);
+        if(primitiveType != null){
+            return primitiveType;
+        }
+
         if(type.getTypeArguments().isEmpty()){
-            return types.erasure(type);
+            return type.hasTag(CLASS) && types.isFunctionalInterface(type) ? unboxWrapper(unboxFunctionalInterface(type))
+                    : types.erasure(type);
         }
 
         if(types.isFunctionalInterface(type)){
@@ -137,8 +164,33 @@ public class Maker {
                 .orElse(functionalInterfaceMethod);
     }
 
+    public boolean isPrimitiveOptional(Type type) {
+        return findPrimitiveOptionalType(type) != null;
+    }
+
+    private Type findPrimitiveOptionalType(Type type) {
+        if(type == null || !type.hasTag(CLASS)){
+            return null;
+        }
+
+        var name = type.tsym.getQualifiedName();
+        if(name.contentEquals(OptionalInt.class.getName())){
+            return symtab.intType;
+        }
+
+        if(name.contentEquals(OptionalLong.class.getName())){
+            return symtab.longType;
+        }
+
+        if(name.contentEquals(OptionalDouble.class.getName())){
+            return symtab.doubleType;
+        }
+
+        return null;
+    }
+
     public boolean hasOptionalName(Name name) {
-        return name.startsWith(names.fromString(Optional.class.getName()));
+        return name.startsWith(symbols.optionalName());
     }
 
     public JCTree.JCLiteral createNullType() {
@@ -146,12 +198,6 @@ public class Maker {
                 .setType(symtab.botType);
     }
 
-    private Symbol.ClassSymbol findBaseModuleClassSymbol(Class<?> clazz) {
-        var baseModule = symtab.getModule(names.fromString("java.base"));
-        var className = names.fromString(clazz.getName());
-        return symtab.getClass(baseModule, className);
-    }
-
     private void eraseAndBoxParameters(List<JCTree.JCVariableDecl> parameters, boolean box) {
         parameters.forEach(parameter -> {
             parameter.type = eraseAndBox(parameter.type, box);
@@ -171,28 +217,159 @@ public class Maker {
 
     public JCTree.JCBinary createNullCheck(JCTree.JCExpression left, boolean nonNull){
         left.type = eraseAndBox(left.type, true);
-        var tag = nonNull ? JCTree.Tag.NE : JCTree.Tag.EQ;
-        var nullType = createNullType();
-        var binary = trees.Binary(tag , left, nullType);
-        binary.operator = resolveBinary(left, nullType, tag);
-        binary.type = symtab.booleanType;
+        return createComparison(nonNull ? JCTree.Tag.NE : JCTree.Tag.EQ, left, createNullType());
+    }
+
+    public JCTree.JCExpression createEmptyValue(Type type){
+        if(type == null || !type.isPrimitive()){
+            return createNullType();
+        }
+
+        return switch (type.getTag()){
+            case INT -> trees.Literal(sentinels.intSentinel());
+            case LONG -> trees.Literal(sentinels.longSentinel());
+            case DOUBLE -> trees.Literal(sentinels.doubleSentinel());
+            default -> throw new IllegalArgumentException("No sentinel is defined for %s".formatted(type));
+        };
+    }
+
+    public JCTree.JCExpression createUnwrap(JCTree.JCExpression optional, Type optionalType){
+        var valueType = unboxWrapper(optionalType);
+        var unwrapper = symbols.member(optionalType.tsym, "orElse");
+        optional.type = optionalType;
+        var select = trees.Select(optional, unwrapper);
+        select.type = types.memberType(optionalType, unwrapper);
+        var invocation = trees.App(select, of(createEmptyValue(valueType)));
+        invocation.type = valueType;
+        return invocation;
+    }
+
+    public JCTree.JCExpression createWrap(JCTree.JCExpression value, Type optionalType, Symbol owner){
+        var valueType = unboxWrapper(optionalType);
+        if(!valueType.isPrimitive()){
+            return createOptionalFactory(optionalType, "ofNullable", of(value));
+        }
+
+        if(value.type != null && value.type.isPrimitive() && !types.isSameType(value.type, valueType)){
+            value = trees.TypeCast(valueType, value);
+        }
+
+        value.type = valueType;
+        var variable = createLocalVariable(uniqueName("bridged"), valueType, value, owner);
+        var wrapped = createConditional(createPresenceCheck(identifier(variable.sym), true),
+                createOptionalFactory(optionalType, "of", of(identifier(variable.sym))),
+                createOptionalFactory(optionalType, "empty", nil()),
+                optionalType);
+        return createLet(of(variable), wrapped);
+    }
+
+    public JCTree.JCExpression createElement(JCTree.JCExpression value, Type optionalType, Symbol owner){
+        if(isPrimitiveOptional(optionalType)){
+            return createWrap(value, optionalType, owner);
+        }
+
+        var empty = createOptionalFactory(types.erasure(optionalType), "empty", nil());
+        if(value.type != null && value.type.hasTag(BOT)){
+            return empty;
+        }
+
+        var variable = createLocalVariable(uniqueName("element"), unboxWrapper(optionalType), value, owner);
+        return createLet(of(variable), createConditional(createNullCheck(identifier(variable.sym), false), empty, identifier(variable.sym), symtab.objectType));
+    }
+
+    public JCTree.JCExpression createElementValue(JCTree.JCExpression element, Type optionalType, Symbol owner){
+        var valueType = unboxWrapper(optionalType);
+        var erasedType = types.erasure(optionalType);
+        element.type = symtab.objectType;
+        var variable = createLocalVariable(uniqueName("element"), symtab.objectType, element, owner);
+        var test = trees.TypeTest(identifier(variable.sym), typeExpression(erasedType));
+        test.type = symtab.booleanType;
+        var unwrapped = createUnwrap(trees.TypeCast(erasedType, identifier(variable.sym)), optionalType);
+        var fallback = valueType.isPrimitive() ? createEmptyValue(valueType) : trees.TypeCast(valueType, identifier(variable.sym));
+        return createLet(of(variable), createConditional(test, unwrapped, fallback, valueType));
+    }
+
+    private JCTree.JCMethodInvocation createOptionalFactory(Type optionalType, String name, List<JCTree.JCExpression> arguments){
+        var factory = symbols.staticMember(optionalType.tsym, name);
+        var select = trees.Select(typeExpression(types.erasure(optionalType)), factory);
+        select.type = new Type.MethodType(arguments.map(argument -> argument.type), optionalType, nil(), symtab.methodClass);
+        var invocation = trees.App(select, arguments);
+        invocation.type = optionalType;
+        return invocation;
+    }
+
+    public JCTree.JCLiteral createDefaultValue(Type type){
+        return switch (type.getTag()){
+            case BYTE -> trees.Literal((byte) 0);
+            case SHORT -> trees.Literal((short) 0);
+            case CHAR -> trees.Literal((char) 0);
+            case INT -> trees.Literal(0);
+            case LONG -> trees.Literal(0L);
+            case FLOAT -> trees.Literal(0F);
+            case DOUBLE -> trees.Literal(0D);
+            case BOOLEAN -> trees.Literal(false);
+            default -> createNullType();
+        };
+    }
+
+    public JCTree.JCExpression createPresenceCheck(JCTree.JCExpression value, boolean present){
+        return createPresenceCheck(value, value.type, present);
+    }
+
+    public JCTree.JCExpression createPresenceCheck(JCTree.JCExpression value, Type representation, boolean present){
+        if(representation == null || !representation.isPrimitive()){
+            return createNullCheck(value, present);
+        }
+
+        if(representation.hasTag(DOUBLE) && Double.isNaN(sentinels.doubleSentinel())){
+            return createNaNCheck(value, present);
+        }
+
+        return createComparison(present ? JCTree.Tag.NE : JCTree.Tag.EQ, value, createEmptyValue(representation));
+    }
+
+    private JCTree.JCExpression createNaNCheck(JCTree.JCExpression value, boolean present) {
+        var doubleSymbol = types.boxedClass(symtab.doubleType);
+        var checkMethod = symbols.staticMember(doubleSymbol, "isNaN");
+        var check = trees.App(trees.Select(trees.Type(doubleSymbol.type), checkMethod), of(value));
+        return present ? createComparison(JCTree.Tag.EQ, check, trees.Literal(false)) : check;
+    }
+
+    public JCTree.JCBinary createComparison(JCTree.Tag tag, JCTree.JCExpression left, JCTree.JCExpression right){
+        return createBinary(tag, left, right, symtab.booleanType);
+    }
+
+    public JCTree.JCBinary createConcatenation(JCTree.JCExpression left, JCTree.JCExpression right){
+        return createBinary(JCTree.Tag.PLUS, left, right, symtab.stringType);
+    }
+
+    public JCTree.JCBinary createBinary(JCTree.Tag tag, JCTree.JCExpression left, JCTree.JCExpression right, Type type){
+        var binary = trees.Binary(tag, left, right);
+        binary.operator = resolveBinary(left, right, tag);
+        binary.type = type;
         return binary;
     }
 
+    public JCTree.JCMethodInvocation createStaticCall(Type owner, String name, List<JCTree.JCExpression> arguments){
+        var method = symbols.staticMember(owner.tsym, name, arguments.size());
+        return trees.App(trees.Select(trees.Type(owner), method), arguments);
+    }
+
+    public Type createOptionalType(Symbol.ClassSymbol owner, Type valueType){
+        if(isPrimitiveOptional(owner.type)){
+            return owner.type;
+        }
+
+        return new Type.ClassType(Type.noType, of(boxed(valueType)), owner);
+    }
+
     public JCTree.JCExpression createDummyNullCheck(boolean nonNull){
-        var checkMethod = symtab.objectsType
-                .asElement()
-                .members()
-                .findFirst(names.fromString(nonNull ? "nonNull" : "isNull"));
+        var checkMethod = symbols.staticMember(symtab.objectsType.tsym, nonNull ? "nonNull" : "isNull");
         return trees.App(trees.Select(trees.Type(symtab.objectsType), checkMethod), nil());
     }
 
-    @SneakyThrows
     private Symbol.OperatorSymbol resolveBinary(JCTree.JCExpression left, JCTree.JCExpression right, JCTree.Tag tag) {
-        return (Symbol.OperatorSymbol) operators.getClass()
-                .getDeclaredMethod("resolveBinary", JCDiagnostic.DiagnosticPosition.class, JCTree.Tag.class, Type.class, Type.class)
-                .opened()
-                .invoke(operators, left.pos(), tag, left.type, right.type);
+        return symbols.resolveBinary(left.pos(), tag, left.type, right.type);
     }
 
     public JCTree.JCMethodDecl createMethodFromLambda(Symbol.ClassSymbol enclosingClass, JCTree.JCMethodDecl enclosingMethod, JCTree.JCExpression expression) {
@@ -201,8 +378,7 @@ public class Maker {
     }
 
     public Name uniqueName(String name) {
-        var counter = OptionalManager.instance().counter().getAndIncrement();
-        return names.fromString(name + "$" + counter);
+        return names.fromString(manager.names().next(name));
     }
 
     public Type boxed(Type type){
@@ -232,6 +408,7 @@ public class Maker {
     public class MethodBuilder {
         Symbol.ClassSymbol enclosingClass;
         JCTree.JCMethodDecl modelMethod;
+        int position = -1;
         Type originalType;
         Type returnType;
         String name;
@@ -243,9 +420,10 @@ public class Maker {
             var methodType = createMethodType();
             var methodSymbol = createMethodSymbol(methodType);
             methodSymbol.params = parameters.map(parameter -> parameter.sym);
-            var method = trees.at(modelMethod.pos()).MethodDef(methodSymbol, body);
+            var method = trees.at(position < 0 ? modelMethod.pos : position).MethodDef(methodSymbol, body);
             parameters.forEach(param -> param.sym.owner = methodSymbol);
-            return OptionalManager.instance().addLambda(method);
+            manager.mappings().record(methodSymbol, name, method.pos);
+            return manager.addLambda(method, modelMethod.sym);
         }
 
         private Type.MethodType createMethodType() {
@@ -258,7 +436,7 @@ public class Maker {
         }
 
         private Symbol.MethodSymbol createMethodSymbol(Type.MethodType methodType) {
-            var modifiers = Elements.createModifiers(modelMethod);
+            var modifiers = Elements.createModifiers(modelMethod) | Flags.SYNTHETIC;
             return new Symbol.MethodSymbol(modifiers, uniqueName(name), methodType, enclosingClass);
         }
     }
@@ -0,0 +1,60 @@
+package it.auties.optional.tree;
+
+import com.sun.tools.javac.code.Symbol;
+import com.sun.tools.javac.code.Type;
+import com.sun.tools.javac.tree.JCTree;
+import com.sun.tools.javac.tree.TreeScanner;
+
+public class OptionalScanner extends TreeScanner {
+    private final SymbolCache symbols;
+    private boolean found;
+
+    public OptionalScanner(Maker maker) {
+        this.symbols = maker.symbols();
+    }
+
+    public boolean containsOptional(JCTree tree){
+        this.found = false;
+        scan(tree);
+        return found;
+    }
+
+    @Override
+    public void scan(JCTree tree) {
+        if(found || tree == null){
+            return;
+        }
+
+        if(isOptional(tree.type)){
+            this.found = true;
+            return;
+        }
+
+        super.scan(tree);
+    }
+
+    @Override
+    public void visitIdent(JCTree.JCIdent tree) {
+        checkOwner(tree.sym);
+    }
+
+    @Override
+    public void visitSelect(JCTree.JCFieldAccess tree) {
+        checkOwner(tree.sym);
+        super.visitSelect(tree);
+    }
+
+    @Override
+    public void visitReference(JCTree.JCMemberReference tree) {
+        checkOwner(tree.sym);
+        super.visitReference(tree);
+    }
+
+    private void checkOwner(Symbol symbol) {
+        found |= symbol != null && (symbols.optionalSymbols().contains(symbol) || symbols.optionalSymbols().contains(symbol.owner));
+    }
+
+    private boolean isOptional(Type type) {
+        return type != null && symbols.optionalSymbols().contains(type.tsym);
+    }
+}
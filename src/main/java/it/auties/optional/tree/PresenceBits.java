@@ -0,0 +1,358 @@
+package it.auties.optional.tree;
+
+import com.sun.tools.javac.code.Flags;
+import com.sun.tools.javac.code.Kinds;
+import com.sun.tools.javac.code.Symbol;
+import com.sun.tools.javac.code.Type;
+import com.sun.tools.javac.code.TypeTag;
+import com.sun.tools.javac.tree.JCTree;
+import com.sun.tools.javac.tree.TreeInfo;
+import com.sun.tools.javac.tree.TreeScanner;
+import com.sun.tools.javac.util.List;
+import com.sun.tools.javac.util.ListBuffer;
+import it.auties.optional.util.DesugarScope;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static com.sun.tools.javac.util.List.of;
+
+public class PresenceBits {
+    public static final String PRESENCE_BITS_FLAG = "presenceBits";
+    private static final int MAX_FIELDS = Long.SIZE;
+
+    private final Maker maker;
+    private final DesugarScope scope;
+    private final boolean enabled;
+    private final Map<Symbol, Slot> slots;
+    private final Map<Symbol, Symbol.VarSymbol> presenceFields;
+
+    public PresenceBits(Maker maker, DesugarScope scope, boolean enabled) {
+        this.maker = maker;
+        this.scope = scope;
+        this.enabled = enabled;
+        this.slots = new HashMap<>();
+        this.presenceFields = new HashMap<>();
+    }
+
+    public void layout(JCTree.JCClassDecl outermostClass) {
+        if(!enabled){
+            return;
+        }
+
+        new TreeScanner(){
+            @Override
+            public void visitClassDef(JCTree.JCClassDecl tree) {
+                if(tree.sym != null){
+                    layoutClass(tree);
+                }
+
+                super.visitClassDef(tree);
+            }
+        }.scan(outermostClass);
+    }
+
+    private void layoutClass(JCTree.JCClassDecl tree) {
+        var owner = tree.sym;
+        if(presenceFields.containsKey(owner) || !scope.includes(owner)){
+            return;
+        }
+
+        var fields = new ArrayList<Symbol>();
+        owner.members().getSymbols(this::isPackable).forEach(fields::add);
+        fields.removeAll(findUnknownWrites(tree, fields));
+        fields.removeAll(findEscapingReads(tree, fields));
+        if(fields.isEmpty()){
+            return;
+        }
+
+        Collections.reverse(fields);
+        var packed = fields.subList(0, Math.min(fields.size(), MAX_FIELDS));
+        var presenceType = packed.size() > Integer.SIZE ? maker.symtab().longType : maker.symtab().intType;
+        var presence = new Symbol.VarSymbol(Flags.PRIVATE | Flags.FINAL | Flags.SYNTHETIC, maker.names().fromString("optional$presence"), presenceType, owner);
+        owner.members().enter(presence);
+        presenceFields.put(owner, presence);
+        for(var index = 0; index < packed.size(); index++){
+            slots.put(packed.get(index), new Slot(presence, 1L << index, maker.unboxWrapper(packed.get(index).type)));
+        }
+    }
+
+    private boolean isPackable(Symbol symbol) {
+        return symbol instanceof Symbol.VarSymbol
+                && symbol.owner.kind == Kinds.Kind.TYP
+                && (symbol.flags() & (Flags.PRIVATE | Flags.FINAL | Flags.STATIC)) == (Flags.PRIVATE | Flags.FINAL)
+                && (symbol.flags() & Flags.RECORD) == 0
+                && maker.isPrimitiveOptional(symbol.type)
+                && scope.desugars(symbol);
+    }
+
+    private Set<Symbol> findUnknownWrites(JCTree.JCClassDecl tree, Collection<Symbol> fields) {
+        var unknown = new HashSet<Symbol>();
+        new TreeScanner(){
+            @Override
+            public void visitExec(JCTree.JCExpressionStatement tree) {
+                if(TreeInfo.skipParens(tree.expr) instanceof JCTree.JCAssign assignment && fields.contains(TreeInfo.symbol(assignment.lhs))){
+                    if(findPresence(assignment.rhs) == null && !isConditionalWrite(assignment)){
+                        unknown.add(TreeInfo.symbol(assignment.lhs));
+                    }
+
+                    scan(assignment.rhs);
+                    return;
+                }
+
+                super.visitExec(tree);
+            }
+
+            @Override
+            public void visitAssign(JCTree.JCAssign tree) {
+                if(fields.contains(TreeInfo.symbol(tree.lhs)) && findPresence(tree.rhs) == null){
+                    unknown.add(TreeInfo.symbol(tree.lhs));
+                }
+
+                super.visitAssign(tree);
+            }
+
+            @Override
+            public void visitVarDef(JCTree.JCVariableDecl tree) {
+                if(fields.contains(tree.sym) && tree.init != null && !hasKnownPresence(tree.init)){
+                    unknown.add(tree.sym);
+                }
+
+                super.visitVarDef(tree);
+            }
+        }.scan(tree);
+        return unknown;
+    }
+
+    private Set<Symbol> findEscapingReads(JCTree.JCClassDecl tree, Collection<Symbol> fields) {
+        var escaping = new HashSet<Symbol>();
+        new TreeScanner(){
+            @Override
+            public void visitApply(JCTree.JCMethodInvocation tree) {
+                if(TreeInfo.skipParens(tree.meth) instanceof JCTree.JCFieldAccess access && fields.contains(TreeInfo.symbol(access.selected)) && isPresenceRead(tree)){
+                    scanReceiver(access.selected);
+                    scan(tree.args);
+                    return;
+                }
+
+                super.visitApply(tree);
+            }
+
+            @Override
+            public void visitAssign(JCTree.JCAssign tree) {
+                if(fields.contains(TreeInfo.symbol(tree.lhs))){
+                    scanReceiver(tree.lhs);
+                    scan(tree.rhs);
+                    return;
+                }
+
+                super.visitAssign(tree);
+            }
+
+            @Override
+            public void visitIdent(JCTree.JCIdent tree) {
+                if(fields.contains(tree.sym)){
+                    escaping.add(tree.sym);
+                }
+            }
+
+            @Override
+            public void visitSelect(JCTree.JCFieldAccess tree) {
+                if(fields.contains(tree.sym)){
+                    escaping.add(tree.sym);
+                }
+
+                super.visitSelect(tree);
+            }
+
+            private void scanReceiver(JCTree.JCExpression field) {
+                if(TreeInfo.skipParens(field) instanceof JCTree.JCFieldAccess access){
+                    scan(access.selected);
+                }
+            }
+        }.scan(tree);
+        return escaping;
+    }
+
+    private boolean isPresenceRead(JCTree.JCMethodInvocation invocation) {
+        return switch (TreeInfo.name(invocation.meth).toString()){
+            case "isPresent", "isEmpty", "orElse" -> true;
+            case "getAsInt", "getAsLong", "getAsDouble", "orElseThrow" -> invocation.args.isEmpty();
+            default -> false;
+        };
+    }
+
+    public Boolean findPresence(JCTree.JCExpression value) {
+        if(!(TreeInfo.skipParens(value) instanceof JCTree.JCMethodInvocation invocation)
+                || !(TreeInfo.symbol(invocation.meth) instanceof Symbol.MethodSymbol method)
+                || !maker.hasOptionalName(method.owner.getQualifiedName())){
+            return null;
+        }
+
+        return switch (method.name.toString()){
+            case "of" -> true;
+            case "empty" -> false;
+            default -> null;
+        };
+    }
+
+    public boolean isConditionalWrite(JCTree.JCAssign assignment) {
+        return TreeInfo.skipParens(assignment.rhs) instanceof JCTree.JCConditional
+                && isStableTarget(assignment.lhs)
+                && hasKnownPresence(assignment.rhs);
+    }
+
+    private boolean hasKnownPresence(JCTree.JCExpression value) {
+        return findPresence(value) != null
+                || (TreeInfo.skipParens(value) instanceof JCTree.JCConditional conditional && hasKnownPresence(conditional.truepart) && hasKnownPresence(conditional.falsepart));
+    }
+
+    private boolean isStableTarget(JCTree.JCExpression target) {
+        return target instanceof JCTree.JCIdent
+                || (target instanceof JCTree.JCFieldAccess access && access.selected instanceof JCTree.JCIdent);
+    }
+
+    public JCTree.JCIf splitConditionalWrite(JCTree.JCAssign assignment) {
+        var conditional = (JCTree.JCConditional) TreeInfo.skipParens(assignment.rhs);
+        var falseTarget = assignment.lhs instanceof JCTree.JCFieldAccess access ? maker.trees().Select(maker.identifier(TreeInfo.symbol(access.selected)), access.sym)
+                : maker.identifier(TreeInfo.symbol(assignment.lhs));
+        falseTarget.type = assignment.lhs.type;
+        return maker.trees()
+                .at(assignment.pos)
+                .If(conditional.cond, createAssignment(assignment.lhs, conditional.truepart), createAssignment(falseTarget, conditional.falsepart));
+    }
+
+    public boolean isPacked(Symbol field) {
+        return field != null && slots.containsKey(field);
+    }
+
+    public void moveInitializers(JCTree.JCClassDecl tree) {
+        if(!presenceFields.containsKey(tree.sym)){
+            return;
+        }
+
+        tree.defs = tree.defs.stream()
+                .flatMap(member -> member instanceof JCTree.JCVariableDecl variable && isPacked(variable.sym) && variable.init != null ? Stream.of(member, createInitializer(variable)) : Stream.of(member))
+                .collect(List.collector());
+    }
+
+    private JCTree.JCBlock createInitializer(JCTree.JCVariableDecl variable) {
+        var assignment = maker.trees()
+                .at(variable.init.pos)
+                .Assign(maker.identifier(variable.sym), variable.init);
+        assignment.type = variable.sym.type;
+        variable.init = null;
+        return maker.trees().Block(0L, of(maker.trees().Exec(assignment)));
+    }
+
+    public void declare(JCTree.JCClassDecl tree) {
+        var presence = presenceFields.get(tree.sym);
+        if(presence != null){
+            tree.defs = tree.defs.prepend(maker.trees().at(tree.pos).VarDef(presence, null));
+        }
+    }
+
+    public JCTree.JCExpression createPresenceCheck(JCTree.JCExpression field, boolean present, Symbol owner) {
+        var statements = new ListBuffer<JCTree.JCStatement>();
+        var receiver = stableReceiver(field, statements, owner);
+        return createLet(statements, createMaskCheck(receiver, TreeInfo.symbol(field), present));
+    }
+
+    public JCTree.JCExpression createRead(JCTree.JCExpression field, JCTree.JCExpression fallback, Symbol owner) {
+        var statements = new ListBuffer<JCTree.JCStatement>();
+        var receiver = stableReceiver(field, statements, owner);
+        var symbol = TreeInfo.symbol(field);
+        return createLet(statements, maker.createConditional(createMaskCheck(receiver, symbol, true), select(receiver, symbol), fallback, slots.get(symbol).valueType()));
+    }
+
+    public JCTree.JCExpression createWrite(JCTree.JCExpression field, JCTree.JCExpression value, Boolean present, Symbol owner) {
+        var statements = new ListBuffer<JCTree.JCStatement>();
+        var receiver = stableReceiver(field, statements, owner);
+        var symbol = TreeInfo.symbol(field);
+        appendWrite(statements, receiver, symbol, value, present, owner);
+        return maker.createLet(statements.toList(), select(receiver, symbol));
+    }
+
+    public JCTree.JCBlock createWriteStatement(JCTree.JCExpression field, JCTree.JCExpression value, Boolean present, Symbol owner) {
+        var statements = new ListBuffer<JCTree.JCStatement>();
+        var receiver = stableReceiver(field, statements, owner);
+        appendWrite(statements, receiver, TreeInfo.symbol(field), value, present, owner);
+        return maker.trees().Block(0L, statements.toList());
+    }
+
+    private void appendWrite(ListBuffer<JCTree.JCStatement> statements, JCTree.JCExpression receiver, Symbol field, JCTree.JCExpression value, Boolean present, Symbol owner) {
+        var slot = slots.get(field);
+        var stored = value;
+        if(present == null){
+            var variable = maker.createLocalVariable(maker.uniqueName("packed"), slot.valueType(), value, owner);
+            statements.append(variable);
+            stored = maker.identifier(variable.sym);
+        }
+
+        statements.append(createAssignment(select(receiver, field), stored));
+        var set = createMask(receiver, slot, JCTree.Tag.BITOR, slot.mask());
+        var cleared = createMask(receiver, slot, JCTree.Tag.BITAND, ~slot.mask());
+        var presence = present == null ? maker.createConditional(maker.createPresenceCheck(maker.identifier(TreeInfo.symbol(stored)), true), set, cleared, slot.presence().type)
+                : present ? set : cleared;
+        statements.append(createAssignment(select(receiver, slot.presence()), presence));
+    }
+
+    private JCTree.JCStatement createAssignment(JCTree.JCExpression target, JCTree.JCExpression value) {
+        var assignment = maker.trees().Assign(target, value);
+        assignment.type = target.type;
+        return maker.trees().Exec(assignment);
+    }
+
+    private JCTree.JCExpression createMaskCheck(JCTree.JCExpression receiver, Symbol field, boolean present) {
+        var slot = slots.get(field);
+        var masked = createMask(receiver, slot, JCTree.Tag.BITAND, slot.mask());
+        return maker.createComparison(present ? JCTree.Tag.NE : JCTree.Tag.EQ, masked, createLiteral(slot.presence().type, 0));
+    }
+
+    private JCTree.JCBinary createMask(JCTree.JCExpression receiver, Slot slot, JCTree.Tag tag, long mask) {
+        var presence = select(receiver, slot.presence());
+        return maker.createBinary(tag, presence, createLiteral(presence.type, mask), presence.type);
+    }
+
+    private JCTree.JCLiteral createLiteral(Type type, long value) {
+        return type.hasTag(TypeTag.LONG) ? maker.trees().Literal(value) : maker.trees().Literal((int) value);
+    }
+
+    private JCTree.JCExpression stableReceiver(JCTree.JCExpression field, ListBuffer<JCTree.JCStatement> statements, Symbol owner) {
+        if(!(field instanceof JCTree.JCFieldAccess access)){
+            return null;
+        }
+
+        if(access.selected instanceof JCTree.JCIdent identifier && identifier.sym instanceof Symbol.VarSymbol){
+            return identifier;
+        }
+
+        var variable = maker.createLocalVariable(maker.uniqueName("receiver"), access.selected.type, access.selected, owner);
+        statements.append(variable);
+        return maker.identifier(variable.sym);
+    }
+
+    private JCTree.JCExpression select(JCTree.JCExpression receiver, Symbol member) {
+        var result = receiver == null ? maker.identifier(member) : maker.trees().Select(maker.identifier(TreeInfo.symbol(receiver)), member);
+        var slot = slots.get(member);
+        if(slot != null){
+            result.type = slot.valueType();
+        }
+
+        return result;
+    }
+
+    private JCTree.JCExpression createLet(ListBuffer<JCTree.JCStatement> statements, JCTree.JCExpression expression) {
+        return statements.isEmpty() ? expression : maker.createLet(statements.toList(), expression);
+    }
+
+    private record Slot(Symbol.VarSymbol presence, long mask, Type valueType) {
+
+    }
+}
@@ -0,0 +1,144 @@
+package it.auties.optional.tree;
+
+import com.sun.tools.javac.code.Flags;
+import com.sun.tools.javac.code.Symbol;
+import com.sun.tools.javac.code.Type;
+import com.sun.tools.javac.tree.JCTree;
+import com.sun.tools.javac.util.List;
+import com.sun.tools.javac.util.Name;
+import it.auties.optional.util.OptionalManager;
+
+import java.util.HashSet;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+
+import static com.sun.tools.javac.util.List.nil;
+import static com.sun.tools.javac.util.List.of;
+
+public class RecordMembers {
+    private final Maker maker;
+    private final OptionalManager manager;
+    private final Set<Symbol> materialized;
+
+    public RecordMembers(Maker maker, OptionalManager manager) {
+        this.maker = maker;
+        this.manager = manager;
+        this.materialized = new HashSet<>();
+    }
+
+    public boolean isMaterialized(Symbol method) {
+        return materialized.contains(method);
+    }
+
+    public void materialize(JCTree.JCClassDecl record) {
+        var components = record.sym.getRecordComponents()
+                .stream()
+                .collect(List.<Symbol.RecordComponent>collector());
+        if(components.stream().noneMatch(component -> isOptional(component.type))){
+            return;
+        }
+
+        record.defs.stream()
+                .filter(member -> member instanceof JCTree.JCMethodDecl method && (method.sym.flags() & Flags.COMPACT_RECORD_CONSTRUCTOR) != 0)
+                .forEach(constructor -> initializeFields(record, (JCTree.JCMethodDecl) constructor));
+        components.stream()
+                .filter(component -> isOptional(component.type))
+                .filter(component -> (component.accessor.flags() & Flags.GENERATED_MEMBER) != 0)
+                .forEach(component -> record.defs = record.defs.append(createAccessor(record, component)));
+        findGenerated(record, maker.names().toString)
+                .ifPresent(method -> record.defs = record.defs.append(createMethod(record, method, createToString(record, components))));
+        if(components.stream().anyMatch(component -> maker.isPrimitiveOptional(component.type))){
+            findGenerated(record, maker.names().hashCode)
+                    .ifPresent(method -> record.defs = record.defs.append(createMethod(record, method, createHashCode(record, components))));
+        }
+    }
+
+    public void updateComponents(JCTree.JCClassDecl record) {
+        record.sym.getRecordComponents()
+                .forEach(component -> component.type = component.accessor.type.getReturnType());
+    }
+
+    private void initializeFields(JCTree.JCClassDecl record, JCTree.JCMethodDecl constructor) {
+        for(var parameter : constructor.params){
+            var field = findField(record, parameter.name);
+            if((field.flags() & Flags.UNINITIALIZED_FIELD) == 0){
+                continue;
+            }
+
+            var assignment = maker.trees().Assign(maker.trees().Select(maker.thisIdentifier(record.sym.type), field), maker.identifier(parameter.sym));
+            assignment.type = field.type;
+            constructor.body.stats = constructor.body.stats.append(maker.trees().Exec(assignment));
+            field.flags_field &= ~Flags.UNINITIALIZED_FIELD;
+        }
+    }
+
+    private JCTree.JCMethodDecl createAccessor(JCTree.JCClassDecl record, Symbol.RecordComponent component) {
+        component.accessor.flags_field &= ~Flags.GENERATED_MEMBER;
+        return createMethod(record, component.accessor, maker.identifier(findField(record, component.name)));
+    }
+
+    private Optional<Symbol.MethodSymbol> findGenerated(JCTree.JCClassDecl record, Name name) {
+        var method = record.sym.members().findFirst(name, candidate -> candidate instanceof Symbol.MethodSymbol && candidate.type.getParameterTypes().isEmpty());
+        if(method == null || (method.flags() & Flags.RECORD) == 0){
+            return Optional.empty();
+        }
+
+        method.flags_field &= ~(Flags.RECORD | Flags.GENERATED_MEMBER);
+        return Optional.of((Symbol.MethodSymbol) method);
+    }
+
+    private JCTree.JCMethodDecl createMethod(JCTree.JCClassDecl record, Symbol.MethodSymbol method, JCTree.JCExpression value) {
+        materialized.add(method);
+        manager.compileCommands().record(method);
+        var body = maker.trees().Block(0L, of(maker.trees().Return(value)));
+        return maker.trees()
+                .at(record.pos)
+                .MethodDef(method, body);
+    }
+
+    private JCTree.JCExpression createToString(JCTree.JCClassDecl record, List<Symbol.RecordComponent> components) {
+        JCTree.JCExpression result = maker.trees().Literal("%s[".formatted(record.sym.getSimpleName()));
+        var separator = "";
+        for(var component : components){
+            result = maker.createConcatenation(result, maker.trees().Literal("%s%s=".formatted(separator, component.name)));
+            result = maker.createConcatenation(result, maker.identifier(findField(record, component.name)));
+            separator = ", ";
+        }
+
+        return maker.createConcatenation(result, maker.trees().Literal("]"));
+    }
+
+    private JCTree.JCExpression createHashCode(JCTree.JCClassDecl record, List<Symbol.RecordComponent> components) {
+        JCTree.JCExpression result = null;
+        for(var component : components){
+            var hash = createHash(record, component);
+            result = result == null ? hash : maker.createBinary(JCTree.Tag.PLUS, maker.createBinary(JCTree.Tag.MUL, result, maker.trees().Literal(31), maker.symtab().intType), hash, maker.symtab().intType);
+        }
+
+        return result;
+    }
+
+    private JCTree.JCExpression createHash(JCTree.JCClassDecl record, Symbol.RecordComponent component) {
+        var field = maker.identifier(findField(record, component.name));
+        if(isOptional(component.type)){
+            var hashCode = maker.symbols().member(component.type.tsym, "hashCode");
+            return maker.trees().App(maker.trees().Select(field, hashCode), nil());
+        }
+
+        if(component.type.isPrimitive()){
+            return maker.createStaticCall(maker.boxed(component.type), "hashCode", of(field));
+        }
+
+        return maker.createStaticCall(maker.symtab().objectsType, "hashCode", of(field));
+    }
+
+    private Symbol.VarSymbol findField(JCTree.JCClassDecl record, Name name) {
+        var field = record.sym.members().findFirst(name, candidate -> candidate instanceof Symbol.VarSymbol);
+        return (Symbol.VarSymbol) Objects.requireNonNull(field, "Missing field %s in %s".formatted(name, record.sym));
+    }
+
+    private boolean isOptional(Type type) {
+        return type != null && type.tsym != null && maker.hasOptionalName(type.tsym.getQualifiedName());
+    }
+}
@@ -0,0 +1,193 @@
+package it.auties.optional.tree;
+
+import com.sun.source.tree.MemberReferenceTree;
+import com.sun.tools.javac.code.Symbol;
+import com.sun.tools.javac.code.Type;
+import com.sun.tools.javac.code.Types;
+import com.sun.tools.javac.tree.JCTree;
+import com.sun.tools.javac.tree.TreeInfo;
+import com.sun.tools.javac.tree.TreeScanner;
+import com.sun.tools.javac.util.List;
+
+import java.util.ArrayList;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static com.sun.tools.javac.tree.TreeInfo.symbolFor;
+import static com.sun.tools.javac.util.List.nil;
+import static com.sun.tools.javac.util.List.of;
+
+public class StreamStages {
+    private final Maker maker;
+    private final Types types;
+
+    public StreamStages(Maker maker, Types types) {
+        this.maker = maker;
+        this.types = types;
+    }
+
+    public boolean isStage(JCTree.JCExpression tree, String name) {
+        return TreeInfo.skipParens(tree) instanceof JCTree.JCMethodInvocation invocation
+                && invocation.meth instanceof JCTree.JCFieldAccess
+                && invocation.args.size() == 1
+                && symbolFor(invocation) instanceof Symbol.MethodSymbol method
+                && method.owner == streamSymbol()
+                && method.name.contentEquals(name);
+    }
+
+    public boolean isOptionalStage(JCTree.JCExpression tree, String name) {
+        return isStage(tree, name) && elementType(receiver(tree)) != null;
+    }
+
+    public JCTree.JCExpression receiver(JCTree.JCExpression stage) {
+        var invocation = (JCTree.JCMethodInvocation) TreeInfo.skipParens(stage);
+        return ((JCTree.JCFieldAccess) invocation.meth).selected;
+    }
+
+    public JCTree.JCExpression argument(JCTree.JCExpression stage) {
+        return ((JCTree.JCMethodInvocation) TreeInfo.skipParens(stage)).args.head;
+    }
+
+    public Type elementType(JCTree.JCExpression stream) {
+        var streamType = stream.type == null ? null : types.asSuper(stream.type, streamSymbol());
+        if(streamType == null || streamType.getTypeArguments().size() != 1){
+            return null;
+        }
+
+        var elementType = types.cvarUpperBound(streamType.getTypeArguments().head);
+        return isReferenceOptional(elementType) ? elementType : null;
+    }
+
+    public boolean isOptionalReference(JCTree.JCExpression argument, Set<String> names) {
+        return argument instanceof JCTree.JCMemberReference reference
+                && reference.kind == JCTree.JCMemberReference.ReferenceKind.UNBOUND
+                && reference.sym instanceof Symbol.MethodSymbol method
+                && method.params().isEmpty()
+                && isReferenceOptional(method.owner.type)
+                && names.contains(method.name.toString());
+    }
+
+    public boolean isStreamLambda(JCTree.JCExpression argument) {
+        if(!(argument instanceof JCTree.JCLambda lambda)){
+            return false;
+        }
+
+        var results = findResults(lambda);
+        return !results.isEmpty() && results.stream().allMatch(this::isStreamCall);
+    }
+
+    private boolean isStreamCall(JCTree.JCExpression result) {
+        return TreeInfo.skipParens(result) instanceof JCTree.JCMethodInvocation invocation
+                && invocation.meth instanceof JCTree.JCFieldAccess access
+                && invocation.args.isEmpty()
+                && symbolFor(invocation).name.contentEquals("stream")
+                && isReferenceOptional(symbolFor(invocation).owner.type)
+                && isReferenceOptional(access.selected.type);
+    }
+
+    public JCTree.JCLambda toNullableLambda(JCTree.JCLambda lambda) {
+        if(lambda.getBodyKind() == JCTree.JCLambda.BodyKind.EXPRESSION){
+            lambda.body = streamCaller((JCTree.JCExpression) lambda.body);
+        }else {
+            new TreeScanner(){
+                @Override
+                public void visitReturn(JCTree.JCReturn tree) {
+                    tree.expr = streamCaller(tree.expr);
+                }
+
+                @Override
+                public void visitLambda(JCTree.JCLambda tree) {
+
+                }
+
+                @Override
+                public void visitClassDef(JCTree.JCClassDecl tree) {
+
+                }
+            }.scan(lambda.body);
+        }
+
+        retargetNullable(lambda);
+        return lambda;
+    }
+
+    private JCTree.JCExpression streamCaller(JCTree.JCExpression result) {
+        var invocation = (JCTree.JCMethodInvocation) TreeInfo.skipParens(result);
+        return ((JCTree.JCFieldAccess) invocation.meth).selected;
+    }
+
+    private List<JCTree.JCExpression> findResults(JCTree.JCLambda lambda) {
+        if(lambda.getBodyKind() == JCTree.JCLambda.BodyKind.EXPRESSION){
+            return of((JCTree.JCExpression) lambda.body);
+        }
+
+        var results = new ArrayList<JCTree.JCExpression>();
+        new TreeScanner(){
+            @Override
+            public void visitReturn(JCTree.JCReturn tree) {
+                results.add(tree.expr);
+            }
+
+            @Override
+            public void visitLambda(JCTree.JCLambda tree) {
+
+            }
+
+            @Override
+            public void visitClassDef(JCTree.JCClassDecl tree) {
+
+            }
+        }.scan(lambda.body);
+        return results.contains(null) ? nil() : List.from(results);
+    }
+
+    public void retargetNullable(JCTree.JCFunctionalExpression function) {
+        var parameterType = types.findDescriptorType(function.target).getParameterTypes().head;
+        var target = createFunctionType(parameterType);
+        function.target = target;
+        function.type = target;
+    }
+
+    public Type createFunctionType(Type parameterType) {
+        var functionSymbol = maker.symbols().member(streamSymbol(), "map").type.getParameterTypes().head.tsym;
+        return new Type.ClassType(Type.noType, of(parameterType, maker.symtab().objectType), functionSymbol);
+    }
+
+    public Type createStreamType(Type elementType) {
+        return new Type.ClassType(Type.noType, of(maker.boxed(elementType)), streamSymbol());
+    }
+
+    public JCTree.JCMethodInvocation createStage(JCTree.JCExpression receiver, String name, JCTree.JCExpression argument, Type resultType) {
+        var method = maker.symbols().member(streamSymbol(), name);
+        var select = maker.trees().Select(receiver, method);
+        select.type = new Type.MethodType(of(argument.type), resultType, nil(), maker.symtab().methodClass);
+        var invocation = maker.trees().App(select, of(argument));
+        invocation.type = resultType;
+        return invocation;
+    }
+
+    public JCTree.JCMethodInvocation createNonNullFilter(JCTree.JCExpression receiver, Type resultType) {
+        var nonNull = maker.symbols().staticMember(maker.symtab().objectsType.tsym, "nonNull");
+        var predicateSymbol = maker.symbols().member(streamSymbol(), "filter").type.getParameterTypes().head.tsym;
+        var predicateType = new Type.ClassType(Type.noType, of(maker.symtab().objectType), predicateSymbol);
+        var reference = maker.trees().Reference(MemberReferenceTree.ReferenceMode.INVOKE, nonNull.name, maker.typeExpression(maker.symtab().objectsType), null);
+        reference.kind = JCTree.JCMemberReference.ReferenceKind.STATIC;
+        reference.sym = nonNull;
+        reference.referentType = nonNull.type;
+        reference.ownerAccessible = true;
+        reference.type = predicateType;
+        reference.target = predicateType;
+        return createStage(receiver, "filter", reference, resultType);
+    }
+
+    private boolean isReferenceOptional(Type type) {
+        return type != null
+                && type.tsym != null
+                && maker.hasOptionalName(type.tsym.getQualifiedName())
+                && !maker.isPrimitiveOptional(type);
+    }
+
+    private Symbol.ClassSymbol streamSymbol() {
+        return maker.symbols().baseClass(Stream.class);
+    }
+}
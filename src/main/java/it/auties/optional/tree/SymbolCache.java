@@ -0,0 +1,133 @@
+package it.auties.optional.tree;
+
+import com.sun.tools.javac.code.Symbol;
+import com.sun.tools.javac.code.Symtab;
+import com.sun.tools.javac.code.Type;
+import com.sun.tools.javac.comp.Operators;
+import com.sun.tools.javac.model.JavacElements;
+import com.sun.tools.javac.tree.JCTree;
+import com.sun.tools.javac.util.Context;
+import com.sun.tools.javac.util.JCDiagnostic;
+import com.sun.tools.javac.util.Name;
+import com.sun.tools.javac.util.Names;
+import it.auties.optional.util.IllegalReflection;
+import lombok.SneakyThrows;
+import lombok.experimental.ExtensionMethod;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.OptionalDouble;
+import java.util.OptionalInt;
+import java.util.OptionalLong;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+@ExtensionMethod(IllegalReflection.class)
+public class SymbolCache {
+    private static final Context.Key<SymbolCache> KEY = new Context.Key<>();
+    private final Names names;
+    private final Symtab symtab;
+    private final Operators operators;
+    private final JavacElements elements;
+    private final Name optionalName;
+    private final Map<Class<?>, Symbol.ClassSymbol> classes;
+    private final Map<Member, Symbol> members;
+    private final MethodHandle resolveBinary;
+    private Set<Symbol> optionalSymbols;
+
+    private SymbolCache(Context context) {
+        this.names = Names.instance(context);
+        this.symtab = Symtab.instance(context);
+        this.operators = Operators.instance(context);
+        this.elements = JavacElements.instance(context);
+        this.optionalName = names.fromString(Optional.class.getName());
+        this.classes = new HashMap<>();
+        this.members = new HashMap<>();
+        this.resolveBinary = findResolveBinary();
+    }
+
+    public static SymbolCache instance(Context context){
+        var instance = context.get(KEY);
+        if(instance != null){
+            return instance;
+        }
+
+        var created = new SymbolCache(context);
+        context.put(KEY, created);
+        return created;
+    }
+
+    @SneakyThrows
+    private MethodHandle findResolveBinary() {
+        var method = Operators.class.getDeclaredMethod("resolveBinary", JCDiagnostic.DiagnosticPosition.class, JCTree.Tag.class, Type.class, Type.class)
+                .opened();
+        return MethodHandles.lookup()
+                .unreflect(method)
+                .bindTo(operators);
+    }
+
+    public Name optionalName() {
+        return optionalName;
+    }
+
+    public Set<Symbol> optionalSymbols() {
+        if(optionalSymbols == null){
+            this.optionalSymbols = Stream.of(Optional.class, OptionalInt.class, OptionalLong.class, OptionalDouble.class)
+                    .map(this::baseClass)
+                    .collect(Collectors.toUnmodifiableSet());
+        }
+
+        return optionalSymbols;
+    }
+
+    public Symbol.ClassSymbol baseClass(Class<?> clazz) {
+        return classes.computeIfAbsent(clazz, key -> symtab.enterClass(symtab.java_base, names.fromString(key.getName())));
+    }
+
+    public Symbol.ClassSymbol runtimeClass(Class<?> clazz) {
+        return classes.computeIfAbsent(clazz, key -> Objects.requireNonNull(elements.getTypeElement(key.getName()), "Missing %s on the classpath".formatted(key.getName())));
+    }
+
+    public Symbol.ClassSymbol findClass(String canonicalName) {
+        return elements.getTypeElement(canonicalName);
+    }
+
+    public Symbol member(Symbol.TypeSymbol owner, String name) {
+        return findMember(new Member(owner, name, false, -1));
+    }
+
+    public Symbol staticMember(Symbol.TypeSymbol owner, String name) {
+        return findMember(new Member(owner, name, true, -1));
+    }
+
+    public Symbol staticMember(Symbol.TypeSymbol owner, String name, int arity) {
+        return findMember(new Member(owner, name, true, arity));
+    }
+
+    private Symbol findMember(Member member) {
+        return members.computeIfAbsent(member, key -> {
+            var found = key.owner()
+                    .members()
+                    .findFirst(names.fromString(key.name()), candidate -> (!key.isStatic() || candidate.isStatic()) && hasArity(candidate, key.arity()));
+            return Objects.requireNonNull(found, "Missing member %s in %s".formatted(key.name(), key.owner()));
+        });
+    }
+
+    private boolean hasArity(Symbol candidate, int arity) {
+        return arity < 0 || (candidate instanceof Symbol.MethodSymbol method && !method.isVarArgs() && method.type.getParameterTypes().size() == arity);
+    }
+
+    @SneakyThrows
+    public Symbol.OperatorSymbol resolveBinary(JCDiagnostic.DiagnosticPosition position, JCTree.Tag tag, Type left, Type right) {
+        return (Symbol.OperatorSymbol) resolveBinary.invokeExact(position, tag, left, right);
+    }
+
+    private record Member(Symbol.TypeSymbol owner, String name, boolean isStatic, int arity) {
+
+    }
+}
@@ -0,0 +1,148 @@
+package it.auties.optional.tree;
+
+import com.sun.tools.javac.code.Flags;
+import com.sun.tools.javac.code.Symbol;
+import com.sun.tools.javac.code.Type;
+import com.sun.tools.javac.code.TypeTag;
+import com.sun.tools.javac.code.Types;
+import com.sun.tools.javac.tree.JCTree;
+import com.sun.tools.javac.tree.TreeInfo;
+import com.sun.tools.javac.tree.TreeScanner;
+import com.sun.tools.javac.util.List;
+import it.auties.optional.util.DesugarScope;
+import it.auties.optional.util.OptionalManager;
+import lombok.RequiredArgsConstructor;
+
+@RequiredArgsConstructor
+public class TwinMethods {
+    private final Maker maker;
+    private final Types types;
+    private final OptionalManager manager;
+    private final DesugarScope scope;
+
+    public Symbol declaredSymbol(Symbol symbol) {
+        return manager.originalOf(symbol);
+    }
+
+    public boolean hasTwin(Symbol symbol) {
+        return symbol instanceof Symbol.MethodSymbol method
+                && !method.isConstructor()
+                && (method.flags() & Flags.NATIVE) == 0
+                && ((method.flags() & Flags.ABSTRACT) == 0 || (method.flags() & Flags.DEFAULT) != 0)
+                && scope.translates(method)
+                && scope.exports(method)
+                && hasOptionalSignature(method);
+    }
+
+    public boolean hasOptionalSignature(Symbol symbol) {
+        return isOptionalType(symbol.type.getReturnType())
+                || symbol.type.getParameterTypes().stream().anyMatch(this::isOptionalType);
+    }
+
+    public boolean redirectsToTwin(Symbol selected, Symbol.ClassSymbol caller) {
+        return hasTwin(selected)
+                && !isOverridable(selected)
+                && canAccessTwin(selected, caller);
+    }
+
+    public void redirectToTwin(JCTree.JCMethodInvocation tree, Symbol selected) {
+        var twin = twinOf((Symbol.MethodSymbol) selected);
+        TreeInfo.setSymbol(tree.meth, twin);
+        if(tree.meth instanceof JCTree.JCIdent identifier){
+            identifier.name = twin.name;
+        }else if(tree.meth instanceof JCTree.JCFieldAccess access){
+            access.name = twin.name;
+        }
+
+        tree.meth.type = twin.type;
+        if(isOptionalType(tree.type)){
+            tree.type = maker.unboxWrapper(tree.type);
+        }
+    }
+
+    public JCTree.JCMethodDecl createTwin(JCTree.JCMethodDecl tree) {
+        var twinSymbol = twinOf(tree.sym);
+        twinSymbol.params = tree.params.map(parameter -> parameter.sym);
+        var twin = maker.trees()
+                .at(tree.pos)
+                .MethodDef(maker.trees().Modifiers(twinSymbol.flags()), twinSymbol.name, maker.typeExpression(twinSymbol.getReturnType()), tree.typarams, tree.params, tree.thrown, tree.body, null);
+        twin.sym = twinSymbol;
+        twin.type = twinSymbol.type;
+        changeOwner(twin, tree.sym, twinSymbol);
+        tree.params = tree.params.map(parameter -> maker.trees().Param(parameter.name, parameter.sym.type, tree.sym));
+        tree.sym.params = tree.params.map(parameter -> parameter.sym);
+        tree.body = createWrapperBody(tree, twinSymbol);
+        return twin;
+    }
+
+    private Symbol.MethodSymbol twinOf(Symbol.MethodSymbol method) {
+        return manager.twinOf(method, key -> {
+            var visibility = (key.enclClass().flags() & Flags.INTERFACE) != 0 || isOverridable(key) ? Flags.PRIVATE : 0;
+            var flags = (key.flags() & ~(Flags.PUBLIC | Flags.PROTECTED | Flags.DEFAULT | Flags.ABSTRACT)) | Flags.SYNTHETIC | visibility;
+            var name = maker.names().fromString("%s$nullable".formatted(key.name));
+            return new Symbol.MethodSymbol(flags, name, manager.snapshot(key.type), key.owner);
+        });
+    }
+
+    private boolean isOverridable(Symbol method) {
+        return (method.flags() & (Flags.STATIC | Flags.FINAL | Flags.PRIVATE)) == 0
+                && (method.enclClass().flags() & Flags.FINAL) == 0;
+    }
+
+    private boolean canAccessTwin(Symbol method, Symbol.ClassSymbol caller) {
+        var owner = method.enclClass();
+        if((owner.flags() & Flags.INTERFACE) != 0){
+            return owner.outermostClass() == caller.outermostClass();
+        }
+
+        return owner.packge() == caller.packge();
+    }
+
+    private void changeOwner(JCTree tree, Symbol owner, Symbol newOwner) {
+        new TreeScanner(){
+            @Override
+            public void visitVarDef(JCTree.JCVariableDecl tree) {
+                if(tree.sym.owner == owner){
+                    tree.sym.owner = newOwner;
+                }
+
+                super.visitVarDef(tree);
+            }
+
+            @Override
+            public void visitClassDef(JCTree.JCClassDecl tree) {
+                if(tree.sym.owner == owner){
+                    tree.sym.owner = newOwner;
+                }
+
+                super.visitClassDef(tree);
+            }
+        }.scan(tree);
+    }
+
+    private JCTree.JCBlock createWrapperBody(JCTree.JCMethodDecl tree, Symbol.MethodSymbol twinSymbol) {
+        var arguments = tree.params.map(parameter -> unwrapParameter(parameter.sym));
+        var invocation = maker.trees().App(maker.identifier(twinSymbol), arguments);
+        var returnType = tree.sym.getReturnType();
+        if(returnType.hasTag(TypeTag.VOID)){
+            return maker.trees().Block(0L, List.of(maker.trees().Exec(invocation)));
+        }
+
+        if(!isOptionalType(returnType)){
+            return maker.trees().Block(0L, List.of(maker.trees().Return(invocation)));
+        }
+
+        invocation.type = maker.unboxWrapper(returnType);
+        var wrapped = maker.createWrap(invocation, types.erasure(returnType), tree.sym);
+        return maker.trees().Block(0L, List.of(maker.trees().Return(wrapped)));
+    }
+
+    private JCTree.JCExpression unwrapParameter(Symbol.VarSymbol parameter) {
+        var identifier = maker.identifier(parameter);
+        return isOptionalType(parameter.type) ? maker.createUnwrap(identifier, parameter.type) : identifier;
+    }
+
+    private boolean isOptionalType(Type type) {
+        return type != null && type.tsym != null && maker.hasOptionalName(type.tsym.getQualifiedName());
+    }
+}
@@ -0,0 +1,122 @@
+package it.auties.optional.util;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordingFile;
+import lombok.SneakyThrows;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+public class CallSiteProfile {
+    public static final String PROFILE_OPTION = "profile";
+    private static final double HOT_THRESHOLD = 0.01;
+    private static final Set<String> EXECUTION_EVENTS = Set.of("jdk.ExecutionSample");
+    private static final Set<String> ALLOCATION_EVENTS = Set.of("jdk.ObjectAllocationSample", "jdk.ObjectAllocationInNewTLAB", "jdk.ObjectAllocationOutsideTLAB");
+    private static final Set<String> OPTIONAL_CLASSES = Set.of("java.util.Optional", "java.util.OptionalInt", "java.util.OptionalLong", "java.util.OptionalDouble");
+    private final Map<String, Long> samples;
+    private final Map<String, Presence> presences;
+    private long totalSamples;
+
+    public CallSiteProfile() {
+        this.samples = new HashMap<>();
+        this.presences = new HashMap<>();
+    }
+
+    public CallSiteProfile load(List<String> files){
+        files.stream()
+                .map(Path::of)
+                .forEach(this::load);
+        return this;
+    }
+
+    private void load(Path file){
+        if(file.getFileName().toString().endsWith(".jfr")){
+            loadRecording(file);
+            return;
+        }
+
+        loadCounters(file);
+    }
+
+    @SneakyThrows
+    private void loadRecording(Path file){
+        try(var recording = new RecordingFile(file)){
+            while (recording.hasMoreEvents()){
+                var event = recording.readEvent();
+                var type = event.getEventType().getName();
+                if(EXECUTION_EVENTS.contains(type)){
+                    recordSample(event, false);
+                }else if(ALLOCATION_EVENTS.contains(type) && OPTIONAL_CLASSES.contains(event.getClass("objectClass").getName())){
+                    recordSample(event, true);
+                }
+            }
+        }
+    }
+
+    private void recordSample(RecordedEvent event, boolean allocation){
+        var stackTrace = event.getStackTrace();
+        if(stackTrace == null){
+            return;
+        }
+
+        stackTrace.getFrames()
+                .stream()
+                .filter(RecordedFrame::isJavaFrame)
+                .filter(frame -> allocation ? !OPTIONAL_CLASSES.contains(frame.getMethod().getType().getName()) : !isPlatformFrame(frame))
+                .findFirst()
+                .ifPresent(frame -> {
+                    samples.merge(siteOf(frame.getMethod().getType().getName(), frame.getLineNumber()), 1L, Long::sum);
+                    totalSamples++;
+                });
+    }
+
+    private boolean isPlatformFrame(RecordedFrame frame){
+        var className = frame.getMethod().getType().getName();
+        return className.startsWith("java.") || className.startsWith("jdk.") || className.startsWith("sun.");
+    }
+
+    @SneakyThrows
+    private void loadCounters(Path file){
+        Files.readAllLines(file)
+                .stream()
+                .skip(1)
+                .map(line -> line.split("\t"))
+                .filter(columns -> columns.length == 4)
+                .forEach(columns -> presences.put(columns[0], new Presence(Long.parseLong(columns[1]), Long.parseLong(columns[2]) + Long.parseLong(columns[3]))));
+    }
+
+    public boolean hasSamples(){
+        return totalSamples != 0;
+    }
+
+    public boolean isHot(String className, long line){
+        var count = samples.getOrDefault(siteOf(className, line), 0L);
+        return count != 0 && count >= totalSamples * HOT_THRESHOLD;
+    }
+
+    public Optional<Boolean> isPresentLikely(String site){
+        return Optional.ofNullable(presences.get(site))
+                .filter(presence -> presence.taken() != presence.empty())
+                .map(presence -> presence.taken() > presence.empty());
+    }
+
+    public void clear(){
+        samples.clear();
+        presences.clear();
+        this.totalSamples = 0;
+    }
+
+    private String siteOf(String className, long line){
+        return "%s:%s".formatted(className, line);
+    }
+
+    private record Presence(long taken, long empty) {
+
+    }
+}
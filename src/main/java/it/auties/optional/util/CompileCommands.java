@@ -0,0 +1,67 @@
+package it.auties.optional.util;
+
+import com.sun.tools.javac.code.Symbol;
+import lombok.Getter;
+import lombok.SneakyThrows;
+import lombok.experimental.Accessors;
+
+import javax.tools.JavaFileManager;
+import javax.tools.StandardLocation;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+@Getter
+@Accessors(fluent = true)
+public class CompileCommands {
+    public static final String COMPILE_COMMANDS_OPTION = "compileCommands";
+    public static final String DEFAULT_LOCATION = "META-INF/optional/compile-commands.txt";
+    private final Set<String> members;
+
+    public CompileCommands() {
+        this.members = new LinkedHashSet<>();
+    }
+
+    public void record(Symbol.MethodSymbol method){
+        members.add(memberName(method));
+    }
+
+    public boolean contains(Symbol.MethodSymbol method){
+        return members.contains(memberName(method));
+    }
+
+    private String memberName(Symbol.MethodSymbol method){
+        var owner = method.owner.flatName().toString().replace('.', '/');
+        return "%s.%s".formatted(owner, method.name);
+    }
+
+    public void clear(){
+        members.clear();
+    }
+
+    @SneakyThrows
+    public void write(Path file){
+        var parent = file.toAbsolutePath().getParent();
+        if(parent != null){
+            Files.createDirectories(parent);
+        }
+
+        Files.writeString(file, toCommands());
+    }
+
+    @SneakyThrows
+    public void write(JavaFileManager fileManager){
+        var file = fileManager.getFileForOutput(StandardLocation.CLASS_OUTPUT, "", DEFAULT_LOCATION, null);
+        try(var writer = file.openWriter()){
+            writer.write(toCommands());
+        }
+    }
+
+    public String toCommands(){
+        return members.stream()
+                .map("inline %s"::formatted)
+                .collect(Collectors.joining("\n", "quiet\n", "\n"));
+    }
+}
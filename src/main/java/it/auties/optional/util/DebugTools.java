@@ -1,16 +1,12 @@
 package it.auties.optional.util;
 
-import java.util.Arrays;
-
-public record DebugTools(boolean debug, boolean skip) {
+public record DebugTools(boolean debug, boolean skip, boolean fuse, boolean instrument) {
     public static final String DEBUG_FLAG = "debug";
     public static final String SKIP_FLAG = "skip";
+    public static final String FUSE_FLAG = "fuse";
+    public static final String INSTRUMENT_FLAG = "instrument";
     public DebugTools(String... args){
-        this(hasFlag(DEBUG_FLAG, args), hasFlag(SKIP_FLAG, args));
-    }
-
-    private static boolean hasFlag(String flag, String[] args) {
-        return Arrays.stream(args).anyMatch(arg -> arg.equalsIgnoreCase(flag));
+        this(PluginOptions.hasFlag(DEBUG_FLAG, args), PluginOptions.hasFlag(SKIP_FLAG, args), PluginOptions.hasFlag(FUSE_FLAG, args), PluginOptions.hasFlag(INSTRUMENT_FLAG, args));
     }
 
     public void debug(Runnable runnable){
@@ -0,0 +1,119 @@
+package it.auties.optional.util;
+
+import com.sun.tools.javac.code.Flags;
+import com.sun.tools.javac.code.Kinds;
+import com.sun.tools.javac.code.Symbol;
+import it.auties.optional.annotation.Desugar;
+import it.auties.optional.annotation.KeepOptional;
+import it.auties.optional.tree.Elements;
+
+import javax.tools.JavaFileObject;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+public record DesugarScope(List<Pattern> includes, List<Pattern> excludes, boolean preserveAbi, Map<Symbol, Boolean> hierarchy) {
+    public static final String INCLUDE_OPTION = "include";
+    public static final String EXCLUDE_OPTION = "exclude";
+    public static final String PRESERVE_ABI_FLAG = "preserveAbi";
+    public DesugarScope(String... args){
+        this(compile(PluginOptions.findOptions(INCLUDE_OPTION, args)), compile(PluginOptions.findOptions(EXCLUDE_OPTION, args)), PluginOptions.hasFlag(PRESERVE_ABI_FLAG, args), new HashMap<>());
+    }
+
+    private static List<Pattern> compile(List<String> globs){
+        return globs.stream()
+                .map(DesugarScope::compile)
+                .toList();
+    }
+
+    private static Pattern compile(String glob){
+        var regex = new StringBuilder();
+        for(var part : glob.split("\\*", -1)){
+            if(!regex.isEmpty()){
+                regex.append(".*");
+            }
+
+            regex.append(Pattern.quote(part));
+        }
+
+        return Pattern.compile(regex.toString());
+    }
+
+    public boolean desugars(Symbol symbol){
+        return translates(symbol) && !exports(symbol);
+    }
+
+    public boolean translates(Symbol symbol){
+        var outermostClass = findOutermostClass(symbol);
+        if(outermostClass == null){
+            return false;
+        }
+
+        var classFile = outermostClass.classfile;
+        return (classFile == null || classFile.getKind() == JavaFileObject.Kind.SOURCE)
+                && includes(symbol);
+    }
+
+    private Symbol.ClassSymbol findOutermostClass(Symbol symbol){
+        var current = (Symbol) symbol.enclClass();
+        while(current != null && current.owner != null && current.owner.kind != Kinds.Kind.PCK){
+            current = current.owner;
+        }
+
+        return current instanceof Symbol.ClassSymbol classSymbol ? classSymbol : null;
+    }
+
+    public boolean exports(Symbol symbol){
+        var kept = hierarchy.get(symbol);
+        if(kept != null){
+            return kept;
+        }
+
+        return preserveAbi
+                && (symbol instanceof Symbol.MethodSymbol || (symbol instanceof Symbol.VarSymbol && symbol.owner.kind == Kinds.Kind.TYP))
+                && (symbol.flags() & (Flags.PUBLIC | Flags.PROTECTED)) != 0;
+    }
+
+    public boolean includes(Symbol symbol){
+        for(var current = symbol; current != null; current = current.owner){
+            if(Elements.isAnnotated(current, KeepOptional.class)){
+                return false;
+            }
+
+            if(Elements.isAnnotated(current, Desugar.class)){
+                return true;
+            }
+
+            if(current instanceof Symbol.PackageSymbol){
+                break;
+            }
+        }
+
+        var enclosingClass = symbol.enclClass();
+        while(enclosingClass != null && isLocal(enclosingClass)){
+            enclosingClass = enclosingClass.owner.enclClass();
+        }
+
+        return enclosingClass == null || matchesOptions(enclosingClass);
+    }
+
+    private boolean isLocal(Symbol.ClassSymbol symbol){
+        return symbol.owner.kind != Kinds.Kind.PCK && symbol.owner.kind != Kinds.Kind.TYP;
+    }
+
+    private boolean matchesOptions(Symbol.ClassSymbol symbol){
+        var className = symbol.getQualifiedName().toString();
+        var packageName = symbol.packge().getQualifiedName().toString();
+        if(matches(excludes, className, packageName)){
+            return false;
+        }
+
+        return includes.isEmpty() || matches(includes, className, packageName);
+    }
+
+    private boolean matches(List<Pattern> patterns, String className, String packageName){
+        return patterns.stream()
+                .anyMatch(pattern -> pattern.matcher(className).matches() || pattern.matcher(packageName).matches());
+    }
+}
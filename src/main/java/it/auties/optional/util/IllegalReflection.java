@@ -6,24 +6,29 @@ import sun.misc.Unsafe;
 import java.io.OutputStream;
 import java.lang.reflect.AccessibleObject;
 import java.lang.reflect.Method;
-import java.util.Arrays;
 import java.util.NoSuchElementException;
 
 @UtilityClass
 public class IllegalReflection {
     private final Unsafe unsafe = openUnsafe();
     private final long offset = findOffset();
+    private volatile boolean javacOpened;
+
+    public synchronized void openJavac(){
+        if(javacOpened){
+            return;
+        }
 
-    public void openJavac(){
         try {
             var jdkCompilerModule = findCompilerModule();
             var addOpensMethod = Module.class.getDeclaredMethod("implAddOpens", String.class, Module.class);
             var addOpensMethodOffset = unsafe.objectFieldOffset(ModulePlaceholder.class.getDeclaredField("first"));
             unsafe.putBooleanVolatile(addOpensMethod, addOpensMethodOffset, true);
-            Arrays.stream(Package.getPackages())
-                    .map(Package::getName)
+            jdkCompilerModule.getPackages()
+                    .stream()
                     .filter(pack -> pack.startsWith("com.sun.tools.javac"))
                     .forEach(pack -> invokeAccessibleMethod(addOpensMethod, jdkCompilerModule, pack, IllegalReflection.class.getModule()));
+            javacOpened = true;
         }catch (Throwable throwable){
             throw new UnsupportedOperationException("Cannot open Javac Modules", throwable);
         }
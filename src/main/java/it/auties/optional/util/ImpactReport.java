@@ -0,0 +1,98 @@
+package it.auties.optional.util;
+
+import lombok.Getter;
+import lombok.SneakyThrows;
+import lombok.experimental.Accessors;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+@Getter
+@Accessors(fluent = true)
+public class ImpactReport {
+    public static final String ANALYZE_OPTION = "analyze";
+    private final Map<String, List<CallSite>> modules;
+
+    public ImpactReport() {
+        this.modules = new TreeMap<>();
+    }
+
+    public void add(String module, CallSite site){
+        modules.computeIfAbsent(module, key -> new ArrayList<>())
+                .add(site);
+    }
+
+    public void clear(){
+        modules.clear();
+    }
+
+    @SneakyThrows
+    public void write(Path file){
+        var parent = file.toAbsolutePath().getParent();
+        if(parent != null){
+            Files.createDirectories(parent);
+        }
+
+        Files.writeString(file, toJson());
+    }
+
+    public String toJson(){
+        var json = new LinkedHashMap<String, Object>();
+        modules.forEach((module, sites) -> json.put(module, toJson(sites)));
+        return Json.object(Map.of("modules", json));
+    }
+
+    private Map<String, Object> toJson(List<CallSite> sites){
+        var transformers = new TreeMap<String, Integer>();
+        sites.stream()
+                .filter(site -> site.transformer() != null)
+                .forEach(site -> transformers.merge(site.transformer(), 1, Integer::sum));
+        var json = new LinkedHashMap<String, Object>();
+        json.put("sites", sites.size());
+        json.put("unsupported", count(sites, Status.UNSUPPORTED));
+        json.put("excluded", count(sites, Status.EXCLUDED));
+        json.put("optionalAllocations", sites.stream().mapToInt(CallSite::optionalAllocations).sum());
+        json.put("boxAllocations", sites.stream().mapToInt(CallSite::boxAllocations).sum());
+        json.put("transformers", transformers);
+        json.put("callSites", sites.stream().map(CallSite::toJson).toList());
+        return json;
+    }
+
+    private long count(List<CallSite> sites, Status status){
+        return sites.stream()
+                .filter(site -> site.status() == status)
+                .count();
+    }
+
+    public enum Status {
+        DESUGARED,
+        UNSUPPORTED,
+        EXCLUDED
+    }
+
+    public record CallSite(String sourceFile, long line, long column, String enclosingClass, String enclosingMember,
+                           String owner, String instruction, boolean reference, String transformer, Status status,
+                           int optionalAllocations, int boxAllocations) {
+        public Map<String, Object> toJson(){
+            var json = new LinkedHashMap<String, Object>();
+            json.put("sourceFile", sourceFile);
+            json.put("line", line);
+            json.put("column", column);
+            json.put("enclosingClass", enclosingClass);
+            json.put("enclosingMember", enclosingMember);
+            json.put("owner", owner);
+            json.put("instruction", instruction);
+            json.put("reference", reference);
+            json.put("transformer", transformer);
+            json.put("status", status.name().toLowerCase());
+            json.put("optionalAllocations", optionalAllocations);
+            json.put("boxAllocations", boxAllocations);
+            return json;
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package it.auties.optional.util;
+
+import java.util.Optional;
+
+public record InlineBudget(int budget) {
+    public static final String INLINE_BUDGET_OPTION = "inlineBudget";
+    public static final int MAX_INLINE_SIZE = 35;
+    public static final int FREQ_INLINE_SIZE = 325;
+    public static final int HUGE_METHOD_LIMIT = 8000;
+    private static final String MAX_INLINE_LIMIT = "MaxInlineSize (%s bytes)".formatted(MAX_INLINE_SIZE);
+
+    public InlineBudget(String... args){
+        this(PluginOptions.findOption(INLINE_BUDGET_OPTION, args, Integer::parseInt, -1));
+    }
+
+    public boolean enabled(){
+        return budget >= 0;
+    }
+
+    public boolean allows(int size, int growth){
+        return !enabled() || size + growth <= budget;
+    }
+
+    public Optional<String> crossedLimit(int before, int after){
+        if(before <= HUGE_METHOD_LIMIT && after > HUGE_METHOD_LIMIT){
+            return Optional.of("HugeMethodLimit (%s bytes)".formatted(HUGE_METHOD_LIMIT));
+        }
+
+        if(before <= FREQ_INLINE_SIZE && after > FREQ_INLINE_SIZE){
+            return Optional.of("FreqInlineSize (%s bytes)".formatted(FREQ_INLINE_SIZE));
+        }
+
+        if(before <= MAX_INLINE_SIZE && after > MAX_INLINE_SIZE){
+            return Optional.of(MAX_INLINE_LIMIT);
+        }
+
+        return Optional.empty();
+    }
+
+    public boolean warns(String limit){
+        return enabled() || !limit.equals(MAX_INLINE_LIMIT);
+    }
+}
@@ -0,0 +1,53 @@
+package it.auties.optional.util;
+
+import lombok.experimental.UtilityClass;
+
+import java.util.Collection;
+import java.util.Locale;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+@UtilityClass
+public class Json {
+    public String object(Map<String, ?> entries){
+        return entries.entrySet()
+                .stream()
+                .map(entry -> "%s: %s".formatted(quote(entry.getKey()), value(entry.getValue())))
+                .collect(Collectors.joining(", ", "{", "}"));
+    }
+
+    public String array(Collection<?> values){
+        return values.stream()
+                .map(Json::value)
+                .collect(Collectors.joining(", ", "[", "]"));
+    }
+
+    public String quote(String value){
+        return '"' + value.replace("\\", "\\\\").replace("\"", "\\\"") + '"';
+    }
+
+    @SuppressWarnings("unchecked")
+    private String value(Object value){
+        if(value == null){
+            return "null";
+        }
+
+        if(value instanceof Map<?, ?> map){
+            return object((Map<String, ?>) map);
+        }
+
+        if(value instanceof Collection<?> collection){
+            return array(collection);
+        }
+
+        if(value instanceof Double || value instanceof Float){
+            return String.format(Locale.ROOT, "%.3f", ((Number) value).doubleValue());
+        }
+
+        if(value instanceof Number || value instanceof Boolean){
+            return value.toString();
+        }
+
+        return quote(value.toString());
+    }
+}
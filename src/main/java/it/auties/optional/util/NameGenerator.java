@@ -0,0 +1,42 @@
+package it.auties.optional.util;
+
+import com.sun.tools.javac.code.Symbol;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+public class NameGenerator {
+    private static final Scope ROOT = new Scope(null, "init");
+    private final Map<Scope, Integer> ordinals;
+    private Scope scope;
+
+    public NameGenerator() {
+        this.ordinals = new HashMap<>();
+        this.scope = ROOT;
+    }
+
+    public Scope enter(Symbol.ClassSymbol owner, String member){
+        var previous = scope;
+        this.scope = new Scope(owner, member);
+        return previous;
+    }
+
+    public void exit(Scope previous){
+        this.scope = Objects.requireNonNullElse(previous, ROOT);
+    }
+
+    public String next(String name){
+        var ordinal = ordinals.merge(scope, 1, Integer::sum) - 1;
+        return "%s$%s$%s".formatted(scope.member(), name, ordinal);
+    }
+
+    public void clear(){
+        ordinals.clear();
+        this.scope = ROOT;
+    }
+
+    public record Scope(Symbol.ClassSymbol owner, String member) {
+
+    }
+}
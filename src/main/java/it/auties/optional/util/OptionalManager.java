@@ -1,32 +1,138 @@
 package it.auties.optional.util;
 
+import com.sun.tools.javac.code.Symbol;
+import com.sun.tools.javac.code.Type;
 import com.sun.tools.javac.tree.JCTree;
+import com.sun.tools.javac.util.Context;
+import com.sun.tools.javac.util.List;
 import it.auties.optional.transformer.OptionalTransformer;
-import lombok.Getter;
+import it.auties.optional.transformer.TransformerRegistry;
+import it.auties.optional.tree.Maker;
 import lombok.experimental.Accessors;
 
-import java.util.ArrayList;
-import java.util.HashSet;
-import java.util.List;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
 
 @Accessors(fluent = true)
 public record OptionalManager(Set<JCTree.JCMethodDecl> generatedLambdas,
-                              List<OptionalTransformer> transformers, AtomicInteger counter) {
-    @Getter
-    private static final OptionalManager instance = new OptionalManager(new HashSet<>(), new ArrayList<>(), new AtomicInteger());
+                              TransformerRegistry transformers, NameGenerator names,
+                              TranslationStats stats, SourceMapping mappings,
+                              CompileCommands compileCommands, CallSiteProfile profile, Map<Symbol, Type> originalTypes,
+                              Map<Symbol, Symbol.MethodSymbol> twins, Map<Symbol, Symbol> twinOriginals, Map<Symbol, Type> importedTypes,
+                              Map<Symbol, Symbol> generatedMembers) {
+    private static final Context.Key<OptionalManager> KEY = new Context.Key<>();
 
-    public JCTree.JCMethodDecl addLambda(JCTree.JCMethodDecl methods){
+    public static OptionalManager instance(Context context){
+        var instance = context.get(KEY);
+        if(instance != null){
+            return instance;
+        }
+
+        var created = new OptionalManager(new LinkedHashSet<>(), new TransformerRegistry(), new NameGenerator(), new TranslationStats(), new SourceMapping(), new CompileCommands(), new CallSiteProfile(), new HashMap<>(), new HashMap<>(), new HashMap<>(), new HashMap<>(), new HashMap<>());
+        context.put(KEY, created);
+        return created;
+    }
+
+    public static void release(Context context){
+        var instance = context.get(KEY);
+        if(instance == null){
+            return;
+        }
+
+        instance.cleanLambdas();
+        instance.names().clear();
+        instance.stats().clear();
+        instance.mappings().clear();
+        instance.compileCommands().clear();
+        instance.profile().clear();
+        instance.originalTypes().clear();
+        instance.twins().clear();
+        instance.twinOriginals().clear();
+        instance.importedTypes().clear();
+        instance.generatedMembers().clear();
+        context.put(KEY, (OptionalManager) null);
+    }
+
+    public JCTree.JCMethodDecl addLambda(JCTree.JCMethodDecl methods, Symbol source){
         generatedLambdas.add(methods);
+        stats.visitGeneratedMethod();
+        compileCommands.record(methods.sym);
+        generatedMembers.put(methods.sym, source);
         return methods;
     }
 
     public OptionalManager addTransformer(OptionalTransformer translator){
-        transformers.add(translator);
+        transformers.register(translator);
         return this;
     }
 
+    public OptionalManager loadTransformers(ClassLoader loader, Maker maker){
+        transformers.load(loader, maker);
+        return this;
+    }
+
+    public List<JCTree.JCMethodDecl> removeLambdas(Symbol.ClassSymbol owner){
+        var owned = generatedLambdas.stream()
+                .filter(lambda -> lambda.sym.owner == owner)
+                .collect(List.collector());
+        owned.forEach(generatedLambdas::remove);
+        return owned;
+    }
+
+    public void recordOriginalType(Symbol symbol){
+        originalTypes.computeIfAbsent(symbol, key -> snapshot(key.type));
+    }
+
+    public Type originalType(Symbol symbol){
+        return originalTypes.getOrDefault(symbol, symbol.type);
+    }
+
+    public Symbol.MethodSymbol twinOf(Symbol.MethodSymbol method, Function<Symbol.MethodSymbol, Symbol.MethodSymbol> factory){
+        return twins.computeIfAbsent(method, key -> {
+            var twin = factory.apply(method);
+            twinOriginals.put(twin, method);
+            generatedMembers.put(twin, method);
+            compileCommands.record(twin);
+            return twin;
+        });
+    }
+
+    public Symbol originalOf(Symbol symbol){
+        return twinOriginals.getOrDefault(symbol, symbol);
+    }
+
+    public boolean isGenerated(Symbol symbol){
+        return generatedMembers.containsKey(symbol);
+    }
+
+    public Symbol sourceOf(Symbol symbol){
+        var source = symbol;
+        while(generatedMembers.containsKey(source)){
+            source = generatedMembers.get(source);
+        }
+
+        return source;
+    }
+
+    public boolean isImported(Symbol symbol){
+        return importedTypes.containsKey(symbol);
+    }
+
+    public Type snapshot(Type type){
+        if(type instanceof Type.ForAll generic){
+            return new Type.ForAll(generic.tvars, snapshot(generic.qtype));
+        }
+
+        if(type instanceof Type.MethodType method){
+            return new Type.MethodType(method.argtypes, method.restype, method.thrown, method.tsym);
+        }
+
+        return type;
+    }
+
     public OptionalManager cleanLambdas(){
         generatedLambdas.clear();
         return this;
@@ -0,0 +1,39 @@
+package it.auties.optional.util;
+
+import lombok.experimental.UtilityClass;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Function;
+
+@UtilityClass
+public class PluginOptions {
+    public boolean hasFlag(String flag, String[] args) {
+        return Arrays.stream(args).anyMatch(arg -> arg.equalsIgnoreCase(flag));
+    }
+
+    public <T> T findOption(String option, String[] args, Function<String, T> parser, T defaultValue) {
+        return Arrays.stream(args)
+                .filter(arg -> isOption(option, arg))
+                .map(arg -> parser.apply(valueOf(option, arg)))
+                .reduce((first, second) -> second)
+                .orElse(defaultValue);
+    }
+
+    public List<String> findOptions(String option, String[] args) {
+        return Arrays.stream(args)
+                .filter(arg -> isOption(option, arg))
+                .flatMap(arg -> Arrays.stream(valueOf(option, arg).split(",")))
+                .map(String::trim)
+                .filter(value -> !value.isEmpty())
+                .toList();
+    }
+
+    private boolean isOption(String option, String arg) {
+        return arg.regionMatches(true, 0, option + "=", 0, option.length() + 1);
+    }
+
+    private String valueOf(String option, String arg) {
+        return arg.substring(option.length() + 1);
+    }
+}
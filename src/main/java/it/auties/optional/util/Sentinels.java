@@ -0,0 +1,13 @@
+package it.auties.optional.util;
+
+public record Sentinels(int intSentinel, long longSentinel, double doubleSentinel) {
+    public static final String INT_OPTION = "intSentinel";
+    public static final String LONG_OPTION = "longSentinel";
+    public static final String DOUBLE_OPTION = "doubleSentinel";
+    public static final Sentinels DEFAULT = new Sentinels(Integer.MIN_VALUE, Long.MIN_VALUE, Double.NaN);
+    public Sentinels(String... args){
+        this(PluginOptions.findOption(INT_OPTION, args, Integer::parseInt, DEFAULT.intSentinel()),
+                PluginOptions.findOption(LONG_OPTION, args, Long::parseLong, DEFAULT.longSentinel()),
+                PluginOptions.findOption(DOUBLE_OPTION, args, Double::parseDouble, DEFAULT.doubleSentinel()));
+    }
+}
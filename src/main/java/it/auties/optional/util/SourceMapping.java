@@ -0,0 +1,72 @@
+package it.auties.optional.util;
+
+import com.sun.tools.javac.code.Symbol;
+import com.sun.tools.javac.tree.JCTree;
+import lombok.Getter;
+import lombok.SneakyThrows;
+import lombok.experimental.Accessors;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+@Getter
+@Accessors(fluent = true)
+public class SourceMapping {
+    public static final String MAPPING_OPTION = "mapping";
+    private final List<Entry> entries;
+    private JCTree.JCCompilationUnit unit;
+
+    public SourceMapping() {
+        this.entries = new ArrayList<>();
+    }
+
+    public void enter(JCTree.JCCompilationUnit unit){
+        this.unit = unit;
+    }
+
+    public void record(Symbol.MethodSymbol member, String instruction, int position){
+        if(unit == null){
+            return;
+        }
+
+        var lineMap = unit.getLineMap();
+        var entry = new Entry(
+                "%s.%s".formatted(member.owner.flatName(), member.name),
+                unit.getSourceFile().getName(),
+                position < 0 ? -1 : lineMap.getLineNumber(position),
+                position < 0 ? -1 : lineMap.getColumnNumber(position),
+                instruction
+        );
+        entries.add(entry);
+    }
+
+    public void clear(){
+        entries.clear();
+        this.unit = null;
+    }
+
+    @SneakyThrows
+    public void write(Path file){
+        var parent = file.toAbsolutePath().getParent();
+        if(parent != null){
+            Files.createDirectories(parent);
+        }
+
+        Files.writeString(file, toTable());
+    }
+
+    public String toTable(){
+        return entries.stream()
+                .map(Entry::toRow)
+                .collect(Collectors.joining("\n", "member\tsource\tline\tcolumn\tinstruction\n", "\n"));
+    }
+
+    public record Entry(String member, String sourceFile, long line, long column, String instruction) {
+        public String toRow(){
+            return String.join("\t", member, sourceFile, String.valueOf(line), String.valueOf(column), instruction);
+        }
+    }
+}
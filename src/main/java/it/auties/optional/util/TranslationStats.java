@@ -0,0 +1,139 @@
+package it.auties.optional.util;
+
+import lombok.Getter;
+import lombok.SneakyThrows;
+import lombok.experimental.Accessors;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+@Getter
+@Accessors(fluent = true)
+public class TranslationStats {
+    public static final String STATS_OPTION = "stats";
+    private final Map<String, Long> unitTimes;
+    private final Map<String, Integer> rewrites;
+    private final Map<String, Integer> generatedMembers;
+    private final Map<String, MethodSize> methodSizes;
+    private int units;
+    private int skippedUnits;
+    private int methods;
+    private int skippedMethods;
+    private int generatedMethods;
+
+    public TranslationStats() {
+        this.unitTimes = new LinkedHashMap<>();
+        this.rewrites = new TreeMap<>();
+        this.generatedMembers = new TreeMap<>();
+        this.methodSizes = new TreeMap<>();
+    }
+
+    public void visitUnit(boolean skipped){
+        units++;
+        if(skipped){
+            skippedUnits++;
+        }
+    }
+
+    public void visitMethod(boolean skipped){
+        methods++;
+        if(skipped){
+            skippedMethods++;
+        }
+    }
+
+    public void visitGeneratedMethod(){
+        generatedMethods++;
+    }
+
+    public void recordUnit(String sourceFile, long nanos){
+        unitTimes.merge(sourceFile, nanos, Long::sum);
+    }
+
+    public void recordRewrite(String instruction){
+        rewrites.merge(instruction, 1, Integer::sum);
+    }
+
+    public void recordGeneratedMembers(String className, int count){
+        if(count == 0){
+            return;
+        }
+
+        generatedMembers.merge(className, count, Integer::sum);
+    }
+
+    public void recordMethodSize(String method, int before, int after){
+        recordMethodSize(method, before, after, null);
+    }
+
+    public void recordMethodSize(String method, int before, int after, String crossedLimit){
+        methodSizes.put(method, new MethodSize(before, after, crossedLimit));
+    }
+
+    public void clear(){
+        this.units = 0;
+        this.skippedUnits = 0;
+        this.methods = 0;
+        this.skippedMethods = 0;
+        this.generatedMethods = 0;
+        unitTimes.clear();
+        rewrites.clear();
+        generatedMembers.clear();
+        methodSizes.clear();
+    }
+
+    @SneakyThrows
+    public void write(Path file){
+        var parent = file.toAbsolutePath().getParent();
+        if(parent != null){
+            Files.createDirectories(parent);
+        }
+
+        Files.writeString(file, toJson());
+    }
+
+    public String toJson(){
+        var unitTimesMillis = new LinkedHashMap<String, Double>();
+        unitTimes.forEach((unit, nanos) -> unitTimesMillis.put(unit, nanos / (double) TimeUnit.MILLISECONDS.toNanos(1)));
+        var json = new LinkedHashMap<String, Object>();
+        json.put("units", units);
+        json.put("skippedUnits", skippedUnits);
+        json.put("methods", methods);
+        json.put("skippedMethods", skippedMethods);
+        json.put("generatedMethods", generatedMethods);
+        json.put("unitTimesMillis", unitTimesMillis);
+        json.put("rewrites", rewrites);
+        json.put("generatedMembers", generatedMembers);
+        var methodSizesJson = new LinkedHashMap<String, Object>();
+        methodSizes.forEach((method, size) -> methodSizesJson.put(method, size.toJson()));
+        json.put("estimatedMethodSizes", methodSizesJson);
+        return Json.object(json);
+    }
+
+    @Override
+    public String toString() {
+        return "Optional: skipped %s/%s compilation units (%s) and %s/%s methods (%s)"
+                .formatted(skippedUnits, units, ratio(skippedUnits, units), skippedMethods, methods, ratio(skippedMethods, methods));
+    }
+
+    private String ratio(int skipped, int total){
+        return total == 0 ? "n/a" : "%.1f%%".formatted(skipped * 100.0 / total);
+    }
+
+    public record MethodSize(int before, int after, String crossedLimit) {
+        public Map<String, Object> toJson(){
+            var json = new LinkedHashMap<String, Object>();
+            json.put("before", before);
+            json.put("after", after);
+            if(crossedLimit != null){
+                json.put("crossedLimit", crossedLimit);
+            }
+
+            return json;
+        }
+    }
+}
@@ -1,5 +1,20 @@
+import com.sun.source.util.Plugin;
+import it.auties.optional.plugin.OptionalPlugin;
+import it.auties.optional.transformer.OptionalTransformerProvider;
+
 module it.auties.optional {
     requires static lombok;
     requires jdk.compiler;
     requires jdk.unsupported;
-}
\ No newline at end of file
+    requires jdk.jfr;
+    requires java.management;
+
+    exports it.auties.optional.annotation;
+    exports it.auties.optional.transformer;
+    exports it.auties.optional.tree;
+    exports it.auties.optional.runtime;
+    exports it.auties.optional.event to jdk.jfr;
+
+    uses OptionalTransformerProvider;
+    provides Plugin with OptionalPlugin;
+}